@@ -2,6 +2,7 @@ package com.club_libertad;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.boot.CommandLineRunner;
@@ -12,6 +13,7 @@ import com.club_libertad.repositories.UsuarioRepository;
 
 @SpringBootApplication
 @EnableScheduling
+@EnableAsync
 public class ClubLibertadApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,45 @@
+package com.club_libertad.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crea la extension pg_trgm y los indices GIN de trigramas que usa la busqueda de personas.
+ * ddl-auto no genera indices por expresion ni con clases de operadores, por eso se crean aca
+ * (de forma idempotente) una vez que Hibernate actualizo el esquema.
+ */
+@Component
+public class IndicesBusquedaPersona {
+    private static final Logger log = LoggerFactory.getLogger(IndicesBusquedaPersona.class);
+
+    private static final String[] SENTENCIAS = {
+            "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+            "CREATE INDEX IF NOT EXISTS idx_persona_nombre_trgm ON persona USING gin (lower(apellido || ' ' || nombre) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_persona_dni_trgm ON persona USING gin (dni gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_registro_nombre_trgm ON registro USING gin (lower(apellido || ' ' || nombre) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_registro_dni_trgm ON registro USING gin (dni gin_trgm_ops)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IndicesBusquedaPersona(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearIndices() {
+        try {
+            for (String sentencia : SENTENCIAS) {
+                jdbcTemplate.execute(sentencia);
+            }
+        } catch (DataAccessException e) {
+            // Sin la extension (p. ej. por falta de permisos) la busqueda por nombre no esta disponible hasta que un administrador la instale
+            log.warn("No se pudieron crear los indices de busqueda de personas: {}", e.getMessage());
+        }
+    }
+}
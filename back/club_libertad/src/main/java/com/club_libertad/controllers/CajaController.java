@@ -0,0 +1,40 @@
+package com.club_libertad.controllers;
+
+import com.club_libertad.enums.PeriodoCaja;
+import com.club_libertad.services.CajaService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController(value = "cajaController")
+public class CajaController {
+    private final CajaService cajaService;
+    public CajaController(CajaService cajaService) {
+        this.cajaService = cajaService;
+    }
+
+    @GetMapping("/caja")
+    @Operation(summary = "Obtiene los totales cobrados por método de pago", description = "Totales por método y por componente (entrenador, seguro, social) del día, la semana (lunes a domingo) o el mes que contiene la fecha. Sin fecha usa hoy")
+    public ResponseEntity<CajaService.ResumenCaja> getResumenCaja(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+                                                                  @RequestParam(defaultValue = "DIA") PeriodoCaja periodo){
+        return ResponseEntity.ok(cajaService.getResumen(fecha != null ? fecha : LocalDate.now(), periodo));
+    }
+
+    @PostMapping("/caja/reconstruir")
+    @Operation(summary = "Recalcula los totales de caja de un rango de fechas a partir de los pagos", description = "desde/hasta con formato yyyy-MM-dd (inclusive). Cada día se recalcula en paralelo")
+    public ResponseEntity<?> reconstruirCaja(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta){
+        if(desde.isAfter(hasta)) {
+            return ResponseEntity.badRequest().body("La fecha desde no puede ser posterior a hasta");
+        }
+        try{
+            return ResponseEntity.ok(cajaService.reconstruir(desde, hasta));
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(500).body("Error al reconstruir la caja: " + e.getMessage());
+        }
+    }
+}
@@ -4,19 +4,30 @@ import com.club_libertad.dtos.CuotaDTO;
 import com.club_libertad.enums.EstadoCuota;
 import com.club_libertad.models.Cuota;
 import com.club_libertad.services.CuotaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping
 public class CuotaController {
     private final CuotaService cuotaService;
-    public CuotaController(CuotaService cuotaService) {
+    private final ObjectMapper objectMapper;
+    public CuotaController(CuotaService cuotaService, ObjectMapper objectMapper) {
         this.cuotaService = cuotaService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/cuotas")
@@ -38,14 +49,15 @@ public class CuotaController {
     }
 
     @PostMapping("/cuota")
-    @Operation(summary = "Crea una cuota")
+    @Operation(summary = "Crea una cuota", description = "Idempotente: si ya existe una cuota para la misma persona, deporte y periodo devuelve su id sin crear otra")
     public ResponseEntity<String> createCuota(@RequestBody CuotaDTO cuotaTransfer){
         ResponseEntity<String> response = ResponseEntity
                 .status(400)
                 .body("Error al crear la cuota");
         try{
-            Optional<Long> id = cuotaService.saveCuota(cuotaTransfer);
-            if(id.isPresent()) response = ResponseEntity.ok("Cuota con id " + id.get() + " creada con exito");
+            Optional<CuotaService.AltaCuota> cuota = cuotaService.saveCuota(cuotaTransfer);
+            if(cuota.isPresent() && cuota.get().creada()) response = ResponseEntity.ok("Cuota con id " + cuota.get().id() + " creada con exito");
+            else if(cuota.isPresent()) response = ResponseEntity.ok("Cuota con id " + cuota.get().id() + " ya existia para esa persona, deporte y periodo");
         } catch (Exception e){
             System.out.println(e.getMessage());
         }
@@ -73,6 +85,59 @@ public class CuotaController {
         }
     }
 
+    @PostMapping("/cuotas/generar-mes-actual/por-lotes")
+    @Operation(summary = "Genera las cuotas del mes actual en lotes con checkpoint", description = "Cada lote se confirma por separado; si la ejecución se interrumpe, la siguiente retoma desde la última inscripción procesada")
+    public ResponseEntity<String> generarCuotasMesActualPorLotes(@RequestParam(required = false) Integer tamanioLote){
+        try{
+            int cuotasGeneradas = cuotaService.generarCuotasMesActualPorLotes(tamanioLote);
+            return ResponseEntity.ok("Se generaron " + cuotasGeneradas + " cuotas nuevas para el mes actual");
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(500).body("Error al generar cuotas: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/cuotas/generar-mes-actual/paralelo")
+    @Operation(summary = "Genera las cuotas del mes actual en paralelo por deporte", description = "Procesa cada deporte en un hilo virtual con su propia transacción y devuelve las cuotas generadas, la duración y el throughput de cada partición")
+    public ResponseEntity<?> generarCuotasMesActualEnParalelo(){
+        try{
+            List<CuotaService.ResultadoParticion> resultados = cuotaService.generarCuotasMesActualEnParalelo();
+            return ResponseEntity.ok(resultados);
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(500).body("Error al generar cuotas: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/cuotas/generar-rango", produces = "application/x-ndjson")
+    @Operation(summary = "Genera las cuotas faltantes para un rango de periodos", description = "desde/hasta con formato yyyy-MM (inclusive). Devuelve una línea JSON por periodo a medida que se procesa")
+    public ResponseEntity<StreamingResponseBody> generarCuotasRango(@RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth desde,
+                                                                    @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth hasta){
+        if (desde.isAfter(hasta)) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                int total = cuotaService.generarCuotasRango(desde, hasta, resultado -> escribirLinea(out, resultado));
+                escribirLinea(out, Map.of("totalCuotasGeneradas", total));
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+                escribirLinea(out, Map.of("error", "Error al generar cuotas: " + e.getMessage()));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private void escribirLinea(OutputStream out, Object linea){
+        try {
+            out.write(objectMapper.writeValueAsBytes(linea));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @PostMapping("/cuotas/actualizar-vencidas")
     @Operation(summary = "Actualiza todas las cuotas generadas cuya fecha de vencimiento es menor o igual a hoy a estado VENCIDA")
     public ResponseEntity<String> actualizarCuotasVencidas(){
@@ -1,16 +1,17 @@
 package com.club_libertad.controllers;
 
+import com.club_libertad.dtos.CambioDeportesDTO;
 import com.club_libertad.dtos.DeporteDTO;
+import com.club_libertad.exceptions.DeporteConCuotasException;
 import com.club_libertad.models.Deporte;
-import com.club_libertad.models.Persona;
 import com.club_libertad.services.DeporteService;
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 @RestController(value = "/deporteController")
 public class DeporteController {
@@ -52,28 +53,62 @@ public class DeporteController {
     }
 
     @PatchMapping("/deporte/{id}")
-    @Operation(summary = "Actualiza uno o varios campos de un deporte por su id")
-    public ResponseEntity<String> updateDeporte(@PathVariable Long id, @RequestBody Deporte deporte){
+    @Operation(summary = "Actualiza uno o varios campos de un deporte por su id", description = "Con repreciarCuotas=true, si cambian los importes se actualizan en segundo plano las cuotas GENERADAS del periodo actual")
+    public ResponseEntity<String> updateDeporte(@PathVariable Long id, @RequestBody Deporte deporte, @RequestParam(defaultValue = "false") boolean repreciarCuotas){
         ResponseEntity<String> response = ResponseEntity.badRequest().build();
-        boolean b = deporteService.updateDeporte(id, deporte);
+        boolean b = deporteService.updateDeporte(id, deporte, repreciarCuotas);
         if(b) response = ResponseEntity.ok("Deporte con id " + id + " actualizada con exito");
         return response;
     }
 
     @DeleteMapping("/deporte/{id}")
-    @Operation(summary = "Elimina un deporte por su id")
+    @Operation(summary = "Elimina un deporte por su id", description = "Responde 409 si el deporte ya tiene cuotas generadas")
     public ResponseEntity<String> deleteDeporte(@PathVariable Long id){
         ResponseEntity<String> response = ResponseEntity.badRequest().build();
-        boolean b = deporteService.deleteDeporteById(id);
-        if(b) response = ResponseEntity.ok("Deporte con id " + id + " eliminada con exito");
+        try{
+            boolean b = deporteService.deleteDeporteById(id);
+            if(b) response = ResponseEntity.ok("Deporte con id " + id + " eliminada con exito");
+        } catch (DeporteConCuotasException e){
+            response = ResponseEntity.status(409).body(e.getMessage());
+        }
         return response;
     }
 
+    @PostMapping("/deportes/cambiar")
+    @Operation(summary = "Mueve personas de un deporte a otro en una sola operación", description = "Toma las personas asociadas al deporte origen (filtros opcionales: categoria y personaIds) y las asocia e inscribe en el destino, dando de baja la asociación y la inscripción en el origen. Con mantenerEnOrigen=true se copian; sin deporteDestinoId solo se dan de baja del origen")
+    public ResponseEntity<?> cambiarDeportes(@RequestBody CambioDeportesDTO cambio){
+        if(cambio.getDeporteOrigenId() == null) {
+            return ResponseEntity.badRequest().body("Debe indicar el deporte de origen");
+        }
+        if(cambio.getDeporteOrigenId().equals(cambio.getDeporteDestinoId())) {
+            return ResponseEntity.badRequest().body("El deporte de destino debe ser distinto del de origen");
+        }
+        if(cambio.getDeporteDestinoId() == null && cambio.isMantenerEnOrigen()) {
+            return ResponseEntity.badRequest().body("Sin deporte de destino no hay nada que cambiar");
+        }
+        Optional<DeporteService.ResultadoCambioDeportes> resultado = deporteService.cambiarDeportes(cambio);
+        if(resultado.isPresent()) return ResponseEntity.ok(resultado.get());
+        return ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/deporte/{deporteId}/personas")
-    @Operation(summary = "Obtiene todas las personas inscritas en un deporte")
-    public ResponseEntity<Set<Persona>> getPersonasByDeporte(@PathVariable Long deporteId) {
-        Set<Persona> personas = deporteService.getPersonasByDeporteId(deporteId);
-        if(personas != null) return ResponseEntity.ok(personas);
+    @Operation(summary = "Obtiene las personas inscritas en un deporte, paginadas", description = "orden: apellido (por defecto), nombre, dni, categoria o fechaRegistro. direccion: ASC o DESC. tamanio entre 1 y 500")
+    public ResponseEntity<DeporteService.PaginaPersonas> getPersonasByDeporte(@PathVariable Long deporteId,
+                                                                              @RequestParam(defaultValue = "0") int pagina,
+                                                                              @RequestParam(defaultValue = "50") int tamanio,
+                                                                              @RequestParam(defaultValue = "apellido") String orden,
+                                                                              @RequestParam(defaultValue = "ASC") Sort.Direction direccion) {
+        Sort sort = switch (orden) {
+            case "apellido" -> Sort.by(direccion, "apellido", "nombre");
+            case "nombre" -> Sort.by(direccion, "nombre", "apellido");
+            case "dni", "categoria", "fechaRegistro" -> Sort.by(direccion, orden);
+            default -> null;
+        };
+        if(sort == null || pagina < 0 || tamanio < 1 || tamanio > 500) {
+            return ResponseEntity.badRequest().build();
+        }
+        Optional<DeporteService.PaginaPersonas> personas = deporteService.getPersonasByDeporteId(deporteId, pagina, tamanio, sort);
+        if(personas.isPresent()) return ResponseEntity.ok(personas.get());
         return ResponseEntity.notFound().build();
     }
 
@@ -1,20 +1,41 @@
 package com.club_libertad.controllers;
 
+import com.club_libertad.dtos.OperacionPagoDTO;
 import com.club_libertad.dtos.PagoDTO;
+import com.club_libertad.enums.MetodoPago;
+import com.club_libertad.exceptions.CuotaYaPagadaException;
+import com.club_libertad.exceptions.PagoInvalidoException;
 import com.club_libertad.models.Pago;
+import com.club_libertad.services.ImportacionPagoService;
 import com.club_libertad.services.PagoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController(value = "pagoController")
 public class PagoController {
     private final PagoService pagoService;
-    public PagoController(PagoService pagoService) {
+    private final ImportacionPagoService importacionPagoService;
+    private final ObjectMapper objectMapper;
+    public PagoController(PagoService pagoService, ImportacionPagoService importacionPagoService, ObjectMapper objectMapper) {
         this.pagoService = pagoService;
+        this.importacionPagoService = importacionPagoService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/pagos")
@@ -26,6 +47,21 @@ public class PagoController {
         return response;
     }
 
+    @GetMapping("/pagos/buscar")
+    @Operation(summary = "Busca pagos paginados por clave", description = "Del más reciente al más antiguo. Filtros opcionales: socioId, metodoPago, desde y hasta (yyyy-MM-dd). Para la página siguiente enviar despuesDeFecha y despuesDeId con los valores siguienteFecha y siguienteId de la respuesta anterior")
+    public ResponseEntity<PagoService.VentanaPagos> buscarPagos(@RequestParam(required = false) Long socioId,
+                                                                @RequestParam(required = false) MetodoPago metodoPago,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate despuesDeFecha,
+                                                                @RequestParam(required = false) Long despuesDeId,
+                                                                @RequestParam(defaultValue = "50") int tamanio){
+        if(tamanio < 1 || tamanio > 500 || (despuesDeFecha == null) != (despuesDeId == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(pagoService.buscarPagos(socioId, metodoPago, desde, hasta, despuesDeFecha, despuesDeId, tamanio));
+    }
+
     @GetMapping("/pago/{id}")
     @Operation(summary = "Obtiene un pago por su id")
     public ResponseEntity<Pago> getPagoById(@PathVariable Long id){
@@ -36,7 +72,7 @@ public class PagoController {
     }
 
     @PostMapping("/pago")
-    @Operation(summary = "Crea un pago y asocia cuotas", description = "Crea un pago y asocia las cuotas especificadas por sus IDs. Las cuotas asociadas se marcan como PAGADAS. METODOS DE PAGO - 0 = EFECTIVO - 1 = TRANSFERENCIA - 2 = DEBITO_AUTOMATICO")
+    @Operation(summary = "Crea un pago y asocia cuotas", description = "Crea un pago y asocia las cuotas especificadas por sus IDs. Las cuotas asociadas se marcan como PAGADAS; si alguna ya está pagada responde 409, y si no existe o no pertenece al socio (ni a una persona a su cargo) responde 400. METODOS DE PAGO - 0 = EFECTIVO - 1 = TRANSFERENCIA - 2 = DEBITO_AUTOMATICO")
     public ResponseEntity<String> createPago(@RequestBody PagoDTO pagoTransfer){
         ResponseEntity<String> response = ResponseEntity
                 .status(400)
@@ -44,9 +80,62 @@ public class PagoController {
         try{
             Optional<Long> id = pagoService.savePago(pagoTransfer);
             if(id.isPresent()) response = ResponseEntity.ok("Pago con id " + id.get() + " creado con exito");
+        } catch (CuotaYaPagadaException e){
+            response = ResponseEntity.status(409).body(e.getMessage());
+        } catch (PagoInvalidoException e){
+            response = ResponseEntity.status(400).body(e.getMessage());
         } catch (Exception e){
             System.out.println(e.getMessage());
         }
         return response;
     }
+
+    @PostMapping("/pagos/sincronizar")
+    @Operation(summary = "Sincroniza los pagos registrados sin conexion en una caja", description = "Recibe las operaciones en orden, cada una con una claveIdempotencia generada por la caja, y las aplica en una sola transacción. Devuelve el resultado de cada operación: APLICADA, CONFLICTO (alguna cuota ya estaba pagada) o INVALIDA. Reenviar una operación ya sincronizada devuelve el mismo resultado con repetida = true")
+    public ResponseEntity<?> sincronizarPagos(@RequestBody List<OperacionPagoDTO> operaciones){
+        ResponseEntity<?> response = ResponseEntity
+                .status(400)
+                .body("Error al sincronizar los pagos");
+        if(operaciones == null || operaciones.isEmpty()) return response;
+        try{
+            response = ResponseEntity.ok(pagoService.sincronizarPagos(operaciones));
+        } catch (PagoInvalidoException e){
+            response = ResponseEntity.status(400).body(e.getMessage());
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+        }
+        return response;
+    }
+
+    @PostMapping(value = "/pagos/importar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "application/x-ndjson")
+    @Operation(summary = "Importa transferencias bancarias desde un CSV", description = "Columnas dni;fecha;monto;referencia (separador ';' o ','; fecha yyyy-MM-dd o dd/MM/yyyy). Cada transferencia se asigna a las cuotas impagas mas antiguas de la persona cuando el monto coincide exactamente. Devuelve una línea JSON por línea del archivo y un resumen al final")
+    public ResponseEntity<StreamingResponseBody> importarTransferencias(@RequestParam("archivo") MultipartFile archivo){
+        if (archivo.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            Map<ImportacionPagoService.EstadoLinea, Integer> resumen = new EnumMap<>(ImportacionPagoService.EstadoLinea.class);
+            try (InputStream in = archivo.getInputStream()) {
+                importacionPagoService.importar(in, resultado -> {
+                    resumen.merge(resultado.estado(), 1, Integer::sum);
+                    escribirLinea(out, resultado);
+                });
+                escribirLinea(out, Map.of("resumen", resumen));
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+                escribirLinea(out, Map.of("error", "Error al importar transferencias: " + e.getMessage(), "resumen", resumen));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private void escribirLinea(OutputStream out, Object linea){
+        try {
+            out.write(objectMapper.writeValueAsBytes(linea));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,18 +1,35 @@
 package com.club_libertad.controllers;
 
+import com.club_libertad.dtos.EliminacionPersonasDTO;
 import com.club_libertad.dtos.PersonaDTO;
+import com.club_libertad.enums.CategoriaPersona;
 import com.club_libertad.exceptions.RegistroDuplicadoException;
 import com.club_libertad.models.Registro;
+import com.club_libertad.services.FamiliaService;
+import com.club_libertad.services.ImportacionPersonaService;
+import com.club_libertad.services.PerfilService;
 import com.club_libertad.services.PersonaService;
 import com.club_libertad.models.Deporte;
 import com.club_libertad.models.Persona;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -20,8 +37,16 @@ import java.util.Set;
 public class PersonaController {
 
     private final PersonaService personaService;
-    public PersonaController(PersonaService personaService) {
+    private final ImportacionPersonaService importacionPersonaService;
+    private final FamiliaService familiaService;
+    private final PerfilService perfilService;
+    private final ObjectMapper objectMapper;
+    public PersonaController(PersonaService personaService, ImportacionPersonaService importacionPersonaService, FamiliaService familiaService, PerfilService perfilService, ObjectMapper objectMapper) {
         this.personaService = personaService;
+        this.importacionPersonaService = importacionPersonaService;
+        this.familiaService = familiaService;
+        this.perfilService = perfilService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/personas")
@@ -31,6 +56,56 @@ public class PersonaController {
         return ResponseEntity.ok(personas);
     }
 
+    @GetMapping("/personas/buscar")
+    @Operation(summary = "Busca personas paginadas por clave", description = "Ordenadas por apellido, nombre e id. Filtros opcionales: categoria, activo, deporteId y promocionId. Para la página siguiente enviar despuesDeApellido, despuesDeNombre y despuesDeId con los valores siguiente* de la respuesta anterior")
+    public ResponseEntity<PersonaService.VentanaPersonas> buscarPersonas(@RequestParam(required = false) CategoriaPersona categoria,
+                                                                         @RequestParam(required = false) Boolean activo,
+                                                                         @RequestParam(required = false) Long deporteId,
+                                                                         @RequestParam(required = false) Long promocionId,
+                                                                         @RequestParam(required = false) String despuesDeApellido,
+                                                                         @RequestParam(required = false) String despuesDeNombre,
+                                                                         @RequestParam(required = false) Long despuesDeId,
+                                                                         @RequestParam(defaultValue = "50") int tamanio) {
+        boolean cursorIncompleto = despuesDeId != null && (despuesDeApellido == null || despuesDeNombre == null);
+        if(tamanio < 1 || tamanio > 500 || cursorIncompleto) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(personaService.buscarPersonas(categoria, activo, deporteId, promocionId,
+                despuesDeApellido, despuesDeNombre, despuesDeId, tamanio));
+    }
+
+    @GetMapping("/personas/busqueda")
+    @Operation(summary = "Busca personas por apellido, nombre o DNI", description = "Búsqueda parcial y tolerante a errores de tipeo sobre personas y registros (incluye dados de baja). Si el texto es numérico busca por dígitos del DNI. Devuelve las mejores coincidencias primero")
+    public ResponseEntity<List<PersonaService.ResultadoBusqueda>> buscarPorTexto(@RequestParam String q,
+                                                                                @RequestParam(defaultValue = "10") int limite) {
+        if(q.isBlank() || limite < 1 || limite > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(personaService.buscarPorTexto(q, limite));
+    }
+
+    @GetMapping("/persona/{id}/familia")
+    @Operation(summary = "Obtiene el grupo familiar de una persona", description = "Devuelve el socio responsable del grupo y todos sus dependientes (directos e indirectos) con sus cuotas impagas y el saldo pendiente total del grupo")
+    public ResponseEntity<FamiliaService.GrupoFamiliar> getGrupoFamiliar(@PathVariable Long id) {
+        ResponseEntity<FamiliaService.GrupoFamiliar> response = ResponseEntity.notFound().build();
+        Optional<FamiliaService.GrupoFamiliar> grupo = familiaService.getGrupoFamiliar(id);
+        if(grupo.isPresent()) response = ResponseEntity.ok(grupo.get());
+        return response;
+    }
+
+    @GetMapping("/persona/{id}/perfil")
+    @Operation(summary = "Obtiene la ficha completa de una persona", description = "Persona, inscripciones activas, ultimas cuotas, ultimos pagos y promocion en una sola peticion. Las secciones que no responden a tiempo se omiten y se listan en seccionesIncompletas")
+    public ResponseEntity<?> getPerfil(@PathVariable Long id) {
+        try {
+            Optional<PerfilService.PerfilPersona> perfil = perfilService.getPerfil(id);
+            if(perfil.isPresent()) return ResponseEntity.ok(perfil.get());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(503).body(e.getMessage());
+        }
+    }
+
     @GetMapping("/persona/{id}")
     @Operation(summary = "Obtiene una persona por su id")
     public ResponseEntity<Persona> getPersonaById(@PathVariable Long id) {
@@ -65,6 +140,39 @@ public class PersonaController {
         return response;
     }
 
+    @PostMapping(value = "/personas/importar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "application/x-ndjson")
+    @Operation(summary = "Importa personas desde un CSV", description = "Columnas dni;nombre;apellido;categoria;fechaNacimiento;email;telefono;direccion;socioResponsableDni;promocionId (separador ';' o ','). Un DNI que ya está en el registro se informa como REGISTRO_DUPLICADO con los datos del registro, salvo con usarRegistroExistente=true. Devuelve una línea JSON por línea del archivo y un resumen al final")
+    public ResponseEntity<StreamingResponseBody> importarPersonas(@RequestParam("archivo") MultipartFile archivo,
+                                                                  @RequestParam(defaultValue = "false") boolean usarRegistroExistente) {
+        if (archivo.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            Map<ImportacionPersonaService.EstadoFila, Integer> resumen = new EnumMap<>(ImportacionPersonaService.EstadoFila.class);
+            try (InputStream in = archivo.getInputStream()) {
+                importacionPersonaService.importar(in, usarRegistroExistente, resultado -> {
+                    resumen.merge(resultado.estado(), 1, Integer::sum);
+                    escribirLinea(out, resultado);
+                });
+                escribirLinea(out, Map.of("resumen", resumen));
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+                escribirLinea(out, Map.of("error", "Error al importar personas: " + e.getMessage(), "resumen", resumen));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private void escribirLinea(OutputStream out, Object linea) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(linea));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public static class RegistroDuplicadoResponse {
         public String message;
         public Registro registro;
@@ -125,4 +233,16 @@ public class PersonaController {
         return ResponseEntity.notFound().build();
     }
 
+    @PostMapping("/personas/eliminar")
+    @Operation(summary = "Elimina varias personas en una sola operación", description = "Recibe los ids y una observación de baja opcional. Devuelve los ids eliminados y los que no existían")
+    public ResponseEntity<?> deletePersonas(@RequestBody EliminacionPersonasDTO eliminacion) {
+        if(eliminacion.getIds() == null || eliminacion.getIds().isEmpty()) {
+            return ResponseEntity.badRequest().body("Debe indicar al menos un id");
+        }
+        Set<Long> solicitados = new LinkedHashSet<>(eliminacion.getIds());
+        List<Long> eliminados = personaService.eliminarPersonas(solicitados, eliminacion.getObservacionBaja());
+        List<Long> inexistentes = solicitados.stream().filter(id -> !eliminados.contains(id)).toList();
+        return ResponseEntity.ok(Map.of("eliminados", eliminados, "inexistentes", inexistentes));
+    }
+
 }
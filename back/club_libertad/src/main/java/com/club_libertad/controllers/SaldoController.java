@@ -0,0 +1,38 @@
+package com.club_libertad.controllers;
+
+import com.club_libertad.models.SaldoPersona;
+import com.club_libertad.services.SaldoService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+
+@RestController(value = "saldoController")
+public class SaldoController {
+    private final SaldoService saldoService;
+    public SaldoController(SaldoService saldoService) {
+        this.saldoService = saldoService;
+    }
+
+    @GetMapping("/persona/{id}/saldo")
+    @Operation(summary = "Obtiene la deuda de una persona", description = "Saldo pendiente, cantidad de cuotas vencidas y periodo impago más antiguo")
+    public ResponseEntity<SaldoPersona> getSaldoByPersona(@PathVariable Long id){
+        ResponseEntity<SaldoPersona> response = ResponseEntity.notFound().build();
+        Optional<SaldoPersona> saldo = saldoService.getSaldoByPersonaId(id);
+        if(saldo.isPresent()) response = ResponseEntity.ok(saldo.get());
+        return response;
+    }
+
+    @PostMapping("/saldos/recalcular")
+    @Operation(summary = "Recalcula la deuda de todas las personas a partir de sus cuotas")
+    public ResponseEntity<String> recalcularSaldos(){
+        try{
+            saldoService.recalcularTodos();
+            return ResponseEntity.ok("Saldos recalculados con exito");
+        } catch (Exception e){
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(500).body("Error al recalcular saldos: " + e.getMessage());
+        }
+    }
+}
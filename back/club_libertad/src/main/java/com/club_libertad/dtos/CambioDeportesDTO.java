@@ -0,0 +1,23 @@
+package com.club_libertad.dtos;
+
+import com.club_libertad.enums.CategoriaPersona;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CambioDeportesDTO {
+    private Long deporteOrigenId;
+    // null: solo se da de baja del origen
+    private Long deporteDestinoId;
+    // Filtros opcionales sobre las personas del origen
+    private CategoriaPersona categoria;
+    private List<Long> personaIds;
+    // true: se agregan al destino sin quitarlas del origen
+    private boolean mantenerEnOrigen;
+    // Fecha de baja e inscripcion; por defecto hoy
+    private LocalDate fecha;
+}
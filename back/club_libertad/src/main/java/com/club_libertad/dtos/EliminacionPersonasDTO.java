@@ -0,0 +1,13 @@
+package com.club_libertad.dtos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class EliminacionPersonasDTO {
+    private List<Long> ids;
+    private String observacionBaja;
+}
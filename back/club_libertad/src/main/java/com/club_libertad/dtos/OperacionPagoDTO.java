@@ -0,0 +1,13 @@
+package com.club_libertad.dtos;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// Pago registrado sin conexion en una caja; la clave la genera el cliente y es unica por operacion
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class OperacionPagoDTO extends PagoDTO {
+    private String claveIdempotencia;
+}
@@ -0,0 +1,5 @@
+package com.club_libertad.enums;
+
+public enum EstadoProceso {
+    EN_CURSO, COMPLETADO
+}
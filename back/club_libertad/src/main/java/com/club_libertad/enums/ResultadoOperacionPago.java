@@ -0,0 +1,5 @@
+package com.club_libertad.enums;
+
+public enum ResultadoOperacionPago {
+    APLICADA, CONFLICTO, INVALIDA
+}
@@ -0,0 +1,16 @@
+package com.club_libertad.exceptions;
+
+import java.util.List;
+
+public class CuotaYaPagadaException extends PagoInvalidoException {
+    private final List<Long> cuotaIds;
+
+    public CuotaYaPagadaException(List<Long> cuotaIds) {
+        super("Las cuotas " + cuotaIds + " ya se encuentran pagadas");
+        this.cuotaIds = cuotaIds;
+    }
+
+    public List<Long> getCuotaIds() {
+        return cuotaIds;
+    }
+}
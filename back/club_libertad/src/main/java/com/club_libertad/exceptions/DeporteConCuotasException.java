@@ -0,0 +1,7 @@
+package com.club_libertad.exceptions;
+
+public class DeporteConCuotasException extends RuntimeException {
+    public DeporteConCuotasException(Long deporteId) {
+        super("El deporte " + deporteId + " tiene cuotas generadas y no puede eliminarse");
+    }
+}
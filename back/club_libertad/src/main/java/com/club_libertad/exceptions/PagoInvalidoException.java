@@ -0,0 +1,7 @@
+package com.club_libertad.exceptions;
+
+public class PagoInvalidoException extends RuntimeException {
+    public PagoInvalidoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package com.club_libertad.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+// Totales cobrados por dia y metodo de pago; los pagos sin metodo se agrupan como SIN_ESPECIFICAR
+@Entity
+@Table(name = "caja_diaria")
+@IdClass(CajaDiaria.Clave.class)
+@Data
+@NoArgsConstructor
+public class CajaDiaria {
+    @Id
+    private LocalDate fecha;
+    @Id
+    @Column(name = "metodo_pago", length = 30)
+    private String metodoPago;
+    @Column(name = "cantidad_pagos", nullable = false)
+    private Long cantidadPagos = 0L;
+    @Column(name = "total_entrenador", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalEntrenador = BigDecimal.ZERO;
+    @Column(name = "total_seguro", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalSeguro = BigDecimal.ZERO;
+    @Column(name = "total_social", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalSocial = BigDecimal.ZERO;
+    @Column(name = "monto_total", nullable = false, precision = 12, scale = 2)
+    private BigDecimal montoTotal = BigDecimal.ZERO;
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private ZonedDateTime fechaActualizacion;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private LocalDate fecha;
+        private String metodoPago;
+    }
+}
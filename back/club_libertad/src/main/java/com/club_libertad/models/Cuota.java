@@ -14,6 +14,8 @@ import java.time.LocalDate;
 @Entity
 @Table(name = "cuota", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"persona_id", "deporte_id", "periodo"}, name = "uk_cuota_persona_deporte_periodo")
+}, indexes = {
+        @Index(name = "idx_cuota_estado_vencimiento", columnList = "estado, fecha_vencimiento")
 })
 @Data
 @EqualsAndHashCode(exclude = {"personaId", "deporteId", "pagoId"})
@@ -1,7 +1,6 @@
 package com.club_libertad.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -9,9 +8,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "deporte")
@@ -34,22 +31,11 @@ public class Deporte {
     private BigDecimal cuotaSeguro = BigDecimal.ZERO;
     @Column(name = "cuota_social", nullable = false, precision = 10, scale = 2)
     private BigDecimal cuotaSocial = BigDecimal.ZERO;
+    // Contador de filas de persona_deporte: solo se modifica con los UPDATE atomicos de DeporteRepository,
+    // nunca al guardar la entidad, para que un Deporte cargado antes no pise el valor
+    @Column(name = "numero_socios", nullable = false, insertable = false, updatable = false, columnDefinition = "integer default 0")
+    private Integer numeroSocios = 0;
     @JsonIgnore
     @ManyToMany(mappedBy = "deportes")
     private Set<Persona> personas = new HashSet<>();
-
-    @JsonProperty("personasIds")
-    public List<Long> getPersonasIds() {
-        return personas != null ? personas.stream()
-                .map(Persona::getId)
-                .collect(Collectors.toList()) : null;
-    }
-
-    @JsonProperty("numeroSocios")
-    public int getNumeroSocios() {
-        return personas != null ? personas.size() : 0;
-    }
-
-    
-
 }
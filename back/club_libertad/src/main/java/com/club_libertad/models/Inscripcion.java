@@ -9,7 +9,9 @@ import java.time.LocalDate;
 
 
 @Entity
-@Table(name = "inscripcion")
+@Table(name = "inscripcion", indexes = {
+        @Index(name = "idx_inscripcion_deporte_persona", columnList = "deporte_id, persona_id")
+})
 @Data
 @NoArgsConstructor
 public class Inscripcion {
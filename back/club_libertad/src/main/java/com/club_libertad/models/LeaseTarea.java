@@ -0,0 +1,23 @@
+package com.club_libertad.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Entity
+@Table(name = "lease_tarea")
+@Data
+@NoArgsConstructor
+public class LeaseTarea {
+    @Id
+    @Column(length = 100)
+    private String nombre;
+    @Column(nullable = false)
+    private String propietario;
+    @Column(name = "adquirido_en", nullable = false)
+    private ZonedDateTime adquiridoEn;
+    @Column(name = "expira_en", nullable = false)
+    private ZonedDateTime expiraEn;
+}
@@ -0,0 +1,56 @@
+package com.club_libertad.models;
+
+import com.club_libertad.enums.ResultadoOperacionPago;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Resultado de cada operacion sincronizada, para responder lo mismo si la caja la vuelve a enviar
+@Entity
+@Table(name = "operacion_pago")
+@Data
+@NoArgsConstructor
+public class OperacionPago implements Persistable<String> {
+    @Id
+    @Column(name = "clave_idempotencia", length = 100)
+    private String claveIdempotencia;
+    @Column(name = "pago_id")
+    private Long pagoId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ResultadoOperacionPago resultado;
+    @Column(columnDefinition = "TEXT")
+    private String detalle;
+    // Cuotas que ya estaban pagadas cuando el resultado fue CONFLICTO
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "cuotas_en_conflicto", columnDefinition = "bigint[]")
+    private List<Long> cuotasEnConflicto;
+    @Column(name = "fecha_registro", nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    // La clave la asigna el cliente: sin esto save() haria un SELECT previo por cada operacion
+    @Transient
+    private boolean nueva = true;
+
+    @Override
+    public String getId() {
+        return claveIdempotencia;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcarExistente() {
+        this.nueva = false;
+    }
+}
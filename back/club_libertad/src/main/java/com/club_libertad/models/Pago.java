@@ -6,13 +6,18 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "pago")
+@Table(name = "pago", indexes = {
+        @Index(name = "idx_pago_fecha_id", columnList = "fecha_pago, id"),
+        @Index(name = "idx_pago_socio_fecha_id", columnList = "socio_id, fecha_pago, id"),
+        @Index(name = "idx_pago_metodo_fecha_id", columnList = "metodo_pago, fecha_pago, id")
+})
 @Data
 @EqualsAndHashCode(exclude = {"cuotas"})
 @NoArgsConstructor
@@ -41,6 +46,7 @@ public class Pago {
     private String observaciones;
     @JsonIgnore
     @OneToMany(mappedBy = "pagoId", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     private List<Cuota> cuotas;
 
     @com.fasterxml.jackson.annotation.JsonProperty("socioId")
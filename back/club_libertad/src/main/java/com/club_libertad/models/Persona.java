@@ -9,6 +9,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 
 import java.time.LocalDate;
@@ -18,7 +19,12 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "persona")
+@Table(name = "persona", indexes = {
+        @Index(name = "idx_persona_apellido_nombre_id", columnList = "apellido, nombre, id"),
+        @Index(name = "idx_persona_categoria_activo_orden", columnList = "categoria, activo, apellido, nombre, id"),
+        @Index(name = "idx_persona_promocion_orden", columnList = "promocion_id, apellido, nombre, id"),
+        @Index(name = "idx_persona_socio_responsable", columnList = "socio_responsable_id")
+})
 @Data
 @EqualsAndHashCode(exclude = {"deportes", "socioResponsable", "promocion"})
 @AllArgsConstructor
@@ -66,8 +72,11 @@ public class Persona {
     @JoinTable(
         name = "persona_deporte",
         joinColumns = @JoinColumn(name = "persona_id"),
-        inverseJoinColumns = @JoinColumn(name = "deporte_id")
+        inverseJoinColumns = @JoinColumn(name = "deporte_id"),
+        indexes = @Index(name = "idx_persona_deporte_deporte", columnList = "deporte_id, persona_id")
     )
+    // deportesIds se serializa en cada listado: se cargan de a 100 personas en vez de una consulta por persona
+    @BatchSize(size = 100)
     private Set<Deporte> deportes;
     @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,33 @@
+package com.club_libertad.models;
+
+import com.club_libertad.enums.EstadoProceso;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+@Entity
+@Table(name = "progreso_generacion_cuota")
+@Data
+@NoArgsConstructor
+public class ProgresoGeneracionCuota {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, unique = true)
+    private LocalDate periodo;
+    // Checkpoint: id de la ultima inscripcion cuyo lote quedo confirmado
+    @Column(name = "ultima_inscripcion_id", nullable = false)
+    private Long ultimaInscripcionId = 0L;
+    @Column(name = "cuotas_generadas", nullable = false)
+    private Integer cuotasGeneradas = 0;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EstadoProceso estado;
+    @Column(name = "fecha_inicio", nullable = false)
+    private ZonedDateTime fechaInicio;
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private ZonedDateTime fechaActualizacion;
+}
@@ -0,0 +1,28 @@
+package com.club_libertad.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+@Entity
+@Table(name = "saldo_persona")
+@Data
+@NoArgsConstructor
+public class SaldoPersona {
+    @Id
+    @Column(name = "persona_id")
+    private Long personaId;
+    // Suma del monto de las cuotas no pagadas (GENERADA y VENCIDA)
+    @Column(name = "saldo_pendiente", nullable = false, precision = 12, scale = 2)
+    private BigDecimal saldoPendiente = BigDecimal.ZERO;
+    @Column(name = "cuotas_vencidas", nullable = false)
+    private Integer cuotasVencidas = 0;
+    @Column(name = "periodo_impago_mas_antiguo")
+    private LocalDate periodoImpagoMasAntiguo;
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private ZonedDateTime fechaActualizacion;
+}
@@ -0,0 +1,25 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Pago;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface CajaDiariaRepositoryCustom {
+    record TotalCaja(String metodoPago, long cantidadPagos, BigDecimal totalEntrenador, BigDecimal totalSeguro,
+                     BigDecimal totalSocial, BigDecimal montoTotal) {}
+
+    record RangoFechas(LocalDate desde, LocalDate hasta) {}
+
+    // Suma los pagos recien creados a los totales de su dia y metodo (un upsert por grupo)
+    void sumarPagos(List<Pago> pagos);
+
+    // Reemplaza los totales del dia por los calculados desde la tabla pago
+    void recalcularDia(LocalDate fecha);
+
+    List<TotalCaja> totalesPorMetodo(LocalDate desde, LocalDate hasta);
+
+    Optional<RangoFechas> rangoFechasPagos();
+}
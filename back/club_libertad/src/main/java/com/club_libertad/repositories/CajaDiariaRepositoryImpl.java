@@ -0,0 +1,136 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Pago;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Los pagos nuevos suman con un lock consultivo compartido por dia y la reconstruccion de un dia toma el
+ * mismo lock en modo exclusivo: varias cajas cobran a la vez sin bloquearse entre si, pero un recalculo
+ * nunca se intercala con un incremento del mismo dia.
+ */
+public class CajaDiariaRepositoryImpl implements CajaDiariaRepositoryCustom {
+    private static final String SIN_METODO = "SIN_ESPECIFICAR";
+
+    private static final String BLOQUEAR_DIAS_COMPARTIDO = """
+            SELECT pg_advisory_xact_lock_shared(hashtext('caja_diaria'), d - DATE '2000-01-01')
+            FROM unnest(?::date[]) AS d ORDER BY d
+            """;
+
+    private static final String SUMAR = """
+            INSERT INTO caja_diaria (fecha, metodo_pago, cantidad_pagos, total_entrenador, total_seguro, total_social, monto_total, fecha_actualizacion)
+            VALUES (?, ?, ?, ?, ?, ?, ?, now())
+            ON CONFLICT (fecha, metodo_pago) DO UPDATE SET
+                cantidad_pagos = caja_diaria.cantidad_pagos + EXCLUDED.cantidad_pagos,
+                total_entrenador = caja_diaria.total_entrenador + EXCLUDED.total_entrenador,
+                total_seguro = caja_diaria.total_seguro + EXCLUDED.total_seguro,
+                total_social = caja_diaria.total_social + EXCLUDED.total_social,
+                monto_total = caja_diaria.monto_total + EXCLUDED.monto_total,
+                fecha_actualizacion = now()
+            """;
+
+    // Sentencias separadas: el INSERT ... SELECT debe tomar su snapshot despues de obtener el lock
+    private static final String BLOQUEAR_DIA = "SELECT pg_advisory_xact_lock(hashtext('caja_diaria'), ?::date - DATE '2000-01-01')";
+
+    private static final String RECALCULAR_DIA = """
+            INSERT INTO caja_diaria (fecha, metodo_pago, cantidad_pagos, total_entrenador, total_seguro, total_social, monto_total, fecha_actualizacion)
+            SELECT fecha_pago, COALESCE(metodo_pago, 'SIN_ESPECIFICAR'), COUNT(*), SUM(cuota_entrenador), SUM(cuota_seguro),
+                   SUM(cuota_social), SUM(monto_total), now()
+            FROM pago
+            WHERE fecha_pago = ?
+            GROUP BY fecha_pago, COALESCE(metodo_pago, 'SIN_ESPECIFICAR')
+            """;
+
+    private static final String TOTALES = """
+            SELECT metodo_pago, SUM(cantidad_pagos) AS cantidad_pagos, SUM(total_entrenador) AS total_entrenador,
+                   SUM(total_seguro) AS total_seguro, SUM(total_social) AS total_social, SUM(monto_total) AS monto_total
+            FROM caja_diaria
+            WHERE fecha BETWEEN ? AND ?
+            GROUP BY metodo_pago
+            ORDER BY metodo_pago
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CajaDiariaRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private record Grupo(LocalDate fecha, String metodoPago) implements Comparable<Grupo> {
+        @Override
+        public int compareTo(Grupo otro) {
+            int porFecha = fecha.compareTo(otro.fecha);
+            return porFecha != 0 ? porFecha : metodoPago.compareTo(otro.metodoPago);
+        }
+    }
+
+    @Override
+    public void sumarPagos(List<Pago> pagos) {
+        if (pagos.isEmpty()) {
+            return;
+        }
+        // Ordenados por grupo para que dos lotes concurrentes tomen las filas en el mismo orden
+        Map<Grupo, TotalCaja> porGrupo = new TreeMap<>();
+        for (Pago pago : pagos) {
+            String metodo = pago.getMetodoPago() != null ? pago.getMetodoPago().name() : SIN_METODO;
+            TotalCaja delta = new TotalCaja(metodo, 1, pago.getCuotaEntrenador(), pago.getCuotaSeguro(), pago.getCuotaSocial(), pago.getMontoTotal());
+            porGrupo.merge(new Grupo(pago.getFechaPago(), metodo), delta, (a, b) -> new TotalCaja(metodo,
+                    a.cantidadPagos() + b.cantidadPagos(),
+                    a.totalEntrenador().add(b.totalEntrenador()),
+                    a.totalSeguro().add(b.totalSeguro()),
+                    a.totalSocial().add(b.totalSocial()),
+                    a.montoTotal().add(b.montoTotal())));
+        }
+
+        Object[] dias = porGrupo.keySet().stream().map(g -> Date.valueOf(g.fecha())).distinct().toArray();
+        jdbcTemplate.query(BLOQUEAR_DIAS_COMPARTIDO,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("date", dias)),
+                rs -> {});
+
+        List<Map.Entry<Grupo, TotalCaja>> filas = new ArrayList<>(porGrupo.entrySet());
+        jdbcTemplate.batchUpdate(SUMAR, filas, filas.size(), (ps, fila) -> {
+            ps.setObject(1, fila.getKey().fecha());
+            ps.setString(2, fila.getKey().metodoPago());
+            ps.setLong(3, fila.getValue().cantidadPagos());
+            ps.setBigDecimal(4, fila.getValue().totalEntrenador());
+            ps.setBigDecimal(5, fila.getValue().totalSeguro());
+            ps.setBigDecimal(6, fila.getValue().totalSocial());
+            ps.setBigDecimal(7, fila.getValue().montoTotal());
+        });
+    }
+
+    @Override
+    public void recalcularDia(LocalDate fecha) {
+        jdbcTemplate.query(BLOQUEAR_DIA, rs -> {}, fecha);
+        jdbcTemplate.update("DELETE FROM caja_diaria WHERE fecha = ?", fecha);
+        jdbcTemplate.update(RECALCULAR_DIA, fecha);
+    }
+
+    @Override
+    public List<TotalCaja> totalesPorMetodo(LocalDate desde, LocalDate hasta) {
+        return jdbcTemplate.query(TOTALES, (rs, i) -> new TotalCaja(
+                rs.getString("metodo_pago"),
+                rs.getLong("cantidad_pagos"),
+                rs.getBigDecimal("total_entrenador"),
+                rs.getBigDecimal("total_seguro"),
+                rs.getBigDecimal("total_social"),
+                rs.getBigDecimal("monto_total")), desde, hasta);
+    }
+
+    @Override
+    public Optional<RangoFechas> rangoFechasPagos() {
+        return jdbcTemplate.query("SELECT MIN(fecha_pago) AS desde, MAX(fecha_pago) AS hasta FROM pago", (rs, i) -> {
+            Date desde = rs.getDate("desde");
+            return desde == null ? null : new RangoFechas(desde.toLocalDate(), rs.getDate("hasta").toLocalDate());
+        }).stream().filter(Objects::nonNull).findFirst();
+    }
+}
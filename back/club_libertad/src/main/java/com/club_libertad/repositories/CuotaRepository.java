@@ -1,18 +1,65 @@
 package com.club_libertad.repositories;
 
 import com.club_libertad.models.Cuota;
+import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.models.Pago;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CuotaRepository extends JpaRepository<Cuota, Long> {
+public interface CuotaRepository extends JpaRepository<Cuota, Long>, CuotaRepositoryCustom {
     @Query("SELECT c FROM Cuota c WHERE c.personaId.id = :personaId AND c.deporteId.id = :deporteId AND c.periodo = :periodo")
     Optional<Cuota> findByPersonaDeporteAndPeriodo(@Param("personaId") Long personaId, @Param("deporteId") Long deporteId, @Param("periodo") LocalDate periodo);
     
-    void deleteByPersonaId_Id(Long personaId);
+    @Modifying
+    @Query("UPDATE Cuota c SET c.cuotaEntrenador = :cuotaEntrenador, c.cuotaSeguro = :cuotaSeguro, c.cuotaSocial = :cuotaSocial, c.monto = :monto " +
+            "WHERE c.deporteId.id = :deporteId AND c.periodo = :periodo AND c.estado = :estado " +
+            "AND c.personaId.id IN (SELECT p.id FROM Persona p WHERE p.promocion.id = :promocionId)")
+    int updateImportesPorPromocion(@Param("deporteId") Long deporteId, @Param("periodo") LocalDate periodo, @Param("estado") EstadoCuota estado,
+                                   @Param("promocionId") Long promocionId, @Param("cuotaEntrenador") BigDecimal cuotaEntrenador,
+                                   @Param("cuotaSeguro") BigDecimal cuotaSeguro, @Param("cuotaSocial") BigDecimal cuotaSocial, @Param("monto") BigDecimal monto);
+
+    @Modifying
+    @Query("UPDATE Cuota c SET c.cuotaEntrenador = :cuotaEntrenador, c.cuotaSeguro = :cuotaSeguro, c.cuotaSocial = :cuotaSocial, c.monto = :monto " +
+            "WHERE c.deporteId.id = :deporteId AND c.periodo = :periodo AND c.estado = :estado " +
+            "AND c.personaId.id IN (SELECT p.id FROM Persona p WHERE p.promocion IS NULL)")
+    int updateImportesSinPromocion(@Param("deporteId") Long deporteId, @Param("periodo") LocalDate periodo, @Param("estado") EstadoCuota estado,
+                                   @Param("cuotaEntrenador") BigDecimal cuotaEntrenador, @Param("cuotaSeguro") BigDecimal cuotaSeguro,
+                                   @Param("cuotaSocial") BigDecimal cuotaSocial, @Param("monto") BigDecimal monto);
+
+    // Cuotas impagas de varias personas, de la mas antigua a la mas nueva
+    @Query("SELECT c FROM Cuota c WHERE c.personaId.id IN :personaIds AND c.estado IN :estados AND c.pagoId IS NULL ORDER BY c.periodo, c.id")
+    List<Cuota> findAbiertasByPersonaIds(@Param("personaIds") Collection<Long> personaIds, @Param("estados") Collection<EstadoCuota> estados);
+
+    boolean existsByDeporteId_Id(Long deporteId);
+
+    // Ultimas cuotas de una persona, de la mas nueva a la mas antigua
+    @Query("SELECT c FROM Cuota c WHERE c.personaId.id = :personaId ORDER BY c.periodo DESC, c.id DESC")
+    List<Cuota> findRecientesByPersonaId(@Param("personaId") Long personaId, Pageable pageable);
+
+    // Bloquea las cuotas (SELECT ... FOR UPDATE) en orden de id para que dos cajas no paguen la misma cuota
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cuota c WHERE c.id IN :ids ORDER BY c.id")
+    List<Cuota> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Cuota c SET c.pagoId = :pago, c.estado = :estado WHERE c.id IN :ids")
+    int asociarPago(@Param("ids") Collection<Long> ids, @Param("pago") Pago pago, @Param("estado") EstadoCuota estado);
+
+    // Cuotas de las personas y las que estan asociadas a pagos hechos por ellas (mismo alcance que el cascade de Pago.cuotas)
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cuota c WHERE c.personaId.id IN :personaIds OR c.pagoId.id IN (SELECT p.id FROM Pago p WHERE p.socioId.id IN :personaIds)")
+    int deleteByPersonaIdsYPagosDeSocios(@Param("personaIds") Collection<Long> personaIds);
 }
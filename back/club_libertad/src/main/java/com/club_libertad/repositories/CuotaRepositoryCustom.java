@@ -0,0 +1,44 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.models.Cuota;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface CuotaRepositoryCustom {
+    /**
+     * Inserta las cuotas en lotes (una sentencia por lote), ignorando las que ya existen para la misma
+     * persona, deporte y periodo (uk_cuota_persona_deporte_periodo).
+     * Devuelve las cuotas efectivamente insertadas, con su id.
+     */
+    List<Cuota> insertCuotasIfAbsent(List<Cuota> cuotas);
+
+    /**
+     * Pasa a VENCIDA las cuotas GENERADAS con vencimiento hasta la fecha y, en la misma sentencia,
+     * suma las nuevas vencidas al saldo de cada persona. Devuelve la cantidad de cuotas actualizadas.
+     */
+    int marcarVencidasHasta(LocalDate fecha);
+
+    /**
+     * Asocia cada cuota a su pago y le asigna el estado, para todas las cuotas de un lote de pagos en una sola sentencia.
+     */
+    int asociarPagos(Map<Long, Long> pagoIdPorCuota, EstadoCuota estado);
+
+    record CuotaUpsert(Long id, boolean creada) {}
+
+    // Importes de la cuota para una promocion (promocionId null = sin promocion)
+    record ImportesCuota(Long promocionId, BigDecimal monto, BigDecimal cuotaEntrenador, BigDecimal cuotaSeguro, BigDecimal cuotaSocial) {}
+
+    /**
+     * Crea la cuota de la persona y deporte para el periodo en una sola sentencia, tomando de importesPorPromocion
+     * los importes que corresponden a la promocion de la persona. Si ya existe, devuelve la existente (creada = false).
+     * Devuelve vacio si la persona no existe o su promocion no esta entre los importes recibidos.
+     */
+    Optional<CuotaUpsert> upsertCuota(Long personaId, Long deporteId, LocalDate periodo, EstadoCuota estado,
+                                      LocalDate fechaVencimiento, LocalDate fechaGeneracion, String concepto,
+                                      List<ImportesCuota> importesPorPromocion);
+}
@@ -0,0 +1,192 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.models.Cuota;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class CuotaRepositoryImpl implements CuotaRepositoryCustom {
+    // Un lote por sentencia; RETURNING informa las filas insertadas sin depender de los conteos del batch JDBC
+    // (con reWriteBatchedInserts el driver devuelve SUCCESS_NO_INFO por fila)
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO cuota (persona_id, deporte_id, periodo, monto, cuota_entrenador, cuota_seguro, cuota_social,
+                               estado, fecha_vencimiento, fecha_generacion, concepto)
+            SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::date[], ?::numeric[], ?::numeric[], ?::numeric[], ?::numeric[],
+                                 ?::text[], ?::date[], ?::date[], ?::text[])
+            ON CONFLICT ON CONSTRAINT uk_cuota_persona_deporte_periodo DO NOTHING
+            RETURNING id, persona_id, deporte_id, periodo
+            """;
+
+    // Los importes los calcula TarifaService; la sentencia solo elige la fila de la promocion de la persona
+    private static final String UPSERT = """
+            WITH tarifa AS (
+                SELECT p.id AS persona_id, t.monto, t.cuota_entrenador, t.cuota_seguro, t.cuota_social
+                FROM persona p
+                JOIN unnest(?::bigint[], ?::numeric[], ?::numeric[], ?::numeric[], ?::numeric[])
+                     AS t(promocion_id, monto, cuota_entrenador, cuota_seguro, cuota_social)
+                  ON t.promocion_id IS NOT DISTINCT FROM p.promocion_id
+                WHERE p.id = ?
+            ), insertada AS (
+                INSERT INTO cuota (persona_id, deporte_id, periodo, monto, cuota_entrenador, cuota_seguro, cuota_social,
+                                   estado, fecha_vencimiento, fecha_generacion, concepto)
+                SELECT persona_id, ?::bigint, ?::date, monto, cuota_entrenador, cuota_seguro, cuota_social,
+                       ?, ?::date, ?::date, ?
+                FROM tarifa
+                ON CONFLICT ON CONSTRAINT uk_cuota_persona_deporte_periodo DO NOTHING
+                RETURNING id
+            )
+            SELECT id, TRUE AS creada FROM insertada
+            UNION ALL
+            SELECT c.id, FALSE FROM cuota c
+            WHERE c.persona_id = ? AND c.deporte_id = ? AND c.periodo = ? AND NOT EXISTS (SELECT 1 FROM insertada)
+            """;
+
+    private static final String MARCAR_VENCIDAS = """
+            WITH vencidas AS (
+                UPDATE cuota SET estado = 'VENCIDA'
+                WHERE estado = 'GENERADA' AND fecha_vencimiento <= ?
+                RETURNING persona_id
+            ), por_persona AS (
+                SELECT persona_id, COUNT(*) AS cantidad FROM vencidas GROUP BY persona_id
+            ), saldo AS (
+                UPDATE saldo_persona s SET cuotas_vencidas = s.cuotas_vencidas + pp.cantidad, fecha_actualizacion = now()
+                FROM por_persona pp
+                WHERE s.persona_id = pp.persona_id
+            )
+            SELECT COALESCE(SUM(cantidad), 0) FROM por_persona
+            """;
+
+    private static final String ASOCIAR_PAGOS = """
+            UPDATE cuota c SET pago_id = v.pago_id, estado = ?
+            FROM unnest(?::bigint[], ?::bigint[]) AS v(cuota_id, pago_id)
+            WHERE c.id = v.cuota_id
+            """;
+
+    private static final String SELECT_EXISTENTE =
+            "SELECT id FROM cuota WHERE persona_id = ? AND deporte_id = ? AND periodo = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public CuotaRepositoryImpl(JdbcTemplate jdbcTemplate,
+                               @Value("${app.cuotas.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    private record ClaveCuota(long personaId, long deporteId, LocalDate periodo) {}
+
+    @Override
+    public List<Cuota> insertCuotasIfAbsent(List<Cuota> cuotas) {
+        List<Cuota> insertadas = new ArrayList<>();
+        for (int desde = 0; desde < cuotas.size(); desde += batchSize) {
+            insertadas.addAll(insertarLote(cuotas.subList(desde, Math.min(desde + batchSize, cuotas.size()))));
+        }
+        return insertadas;
+    }
+
+    private List<Cuota> insertarLote(List<Cuota> lote) {
+        int n = lote.size();
+        Object[] personas = new Object[n], deportes = new Object[n], periodos = new Object[n], montos = new Object[n],
+                entrenador = new Object[n], seguro = new Object[n], social = new Object[n], estados = new Object[n],
+                vencimientos = new Object[n], generaciones = new Object[n], conceptos = new Object[n];
+        Map<ClaveCuota, Cuota> porClave = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Cuota cuota = lote.get(i);
+            personas[i] = cuota.getPersonaId().getId();
+            deportes[i] = cuota.getDeporteId().getId();
+            periodos[i] = Date.valueOf(cuota.getPeriodo());
+            montos[i] = cuota.getMonto();
+            entrenador[i] = cuota.getCuotaEntrenador();
+            seguro[i] = cuota.getCuotaSeguro();
+            social[i] = cuota.getCuotaSocial();
+            estados[i] = cuota.getEstado().name();
+            vencimientos[i] = cuota.getFechaVencimiento() != null ? Date.valueOf(cuota.getFechaVencimiento()) : null;
+            generaciones[i] = cuota.getFechaGeneracion() != null ? Date.valueOf(cuota.getFechaGeneracion()) : null;
+            conceptos[i] = cuota.getConcepto();
+            porClave.put(new ClaveCuota(cuota.getPersonaId().getId(), cuota.getDeporteId().getId(), cuota.getPeriodo()), cuota);
+        }
+        List<Cuota> insertadas = new ArrayList<>();
+        jdbcTemplate.query(INSERT_IF_ABSENT, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", personas));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", deportes));
+            ps.setArray(3, ps.getConnection().createArrayOf("date", periodos));
+            ps.setArray(4, ps.getConnection().createArrayOf("numeric", montos));
+            ps.setArray(5, ps.getConnection().createArrayOf("numeric", entrenador));
+            ps.setArray(6, ps.getConnection().createArrayOf("numeric", seguro));
+            ps.setArray(7, ps.getConnection().createArrayOf("numeric", social));
+            ps.setArray(8, ps.getConnection().createArrayOf("text", estados));
+            ps.setArray(9, ps.getConnection().createArrayOf("date", vencimientos));
+            ps.setArray(10, ps.getConnection().createArrayOf("date", generaciones));
+            ps.setArray(11, ps.getConnection().createArrayOf("text", conceptos));
+        }, rs -> {
+            Cuota cuota = porClave.get(new ClaveCuota(rs.getLong("persona_id"), rs.getLong("deporte_id"),
+                    rs.getObject("periodo", LocalDate.class)));
+            cuota.setId(rs.getLong("id"));
+            insertadas.add(cuota);
+        });
+        return insertadas;
+    }
+
+    @Override
+    public int marcarVencidasHasta(LocalDate fecha) {
+        Integer actualizadas = jdbcTemplate.queryForObject(MARCAR_VENCIDAS, Integer.class, fecha);
+        return actualizadas != null ? actualizadas : 0;
+    }
+
+    @Override
+    public int asociarPagos(Map<Long, Long> pagoIdPorCuota, EstadoCuota estado) {
+        if (pagoIdPorCuota.isEmpty()) {
+            return 0;
+        }
+        Object[] cuotaIds = pagoIdPorCuota.keySet().toArray();
+        Object[] pagoIds = pagoIdPorCuota.values().toArray();
+        return jdbcTemplate.update(ASOCIAR_PAGOS, ps -> {
+            ps.setString(1, estado.name());
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", cuotaIds));
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint", pagoIds));
+        });
+    }
+
+    @Override
+    public Optional<CuotaUpsert> upsertCuota(Long personaId, Long deporteId, LocalDate periodo, EstadoCuota estado,
+                                             LocalDate fechaVencimiento, LocalDate fechaGeneracion, String concepto,
+                                             List<ImportesCuota> importesPorPromocion) {
+        Object[] promocionIds = importesPorPromocion.stream().map(ImportesCuota::promocionId).toArray();
+        Object[] montos = importesPorPromocion.stream().map(ImportesCuota::monto).toArray();
+        Object[] entrenador = importesPorPromocion.stream().map(ImportesCuota::cuotaEntrenador).toArray();
+        Object[] seguro = importesPorPromocion.stream().map(ImportesCuota::cuotaSeguro).toArray();
+        Object[] social = importesPorPromocion.stream().map(ImportesCuota::cuotaSocial).toArray();
+        List<CuotaUpsert> resultado = jdbcTemplate.query(UPSERT, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", promocionIds));
+            ps.setArray(2, ps.getConnection().createArrayOf("numeric", montos));
+            ps.setArray(3, ps.getConnection().createArrayOf("numeric", entrenador));
+            ps.setArray(4, ps.getConnection().createArrayOf("numeric", seguro));
+            ps.setArray(5, ps.getConnection().createArrayOf("numeric", social));
+            ps.setLong(6, personaId);
+            ps.setLong(7, deporteId);
+            ps.setObject(8, periodo);
+            ps.setString(9, estado != null ? estado.name() : null);
+            ps.setObject(10, fechaVencimiento);
+            ps.setObject(11, fechaGeneracion);
+            ps.setString(12, concepto);
+            ps.setLong(13, personaId);
+            ps.setLong(14, deporteId);
+            ps.setObject(15, periodo);
+        }, (rs, rowNum) -> new CuotaUpsert(rs.getLong("id"), rs.getBoolean("creada")));
+        if (!resultado.isEmpty()) {
+            return Optional.of(resultado.get(0));
+        }
+        // Otra transaccion inserto la misma cuota mientras esperabamos: su fila no es visible en el snapshot de la sentencia
+        List<Long> existente = jdbcTemplate.queryForList(SELECT_EXISTENTE, Long.class, personaId, deporteId, periodo);
+        return existente.stream().findFirst().map(id -> new CuotaUpsert(id, false));
+    }
+}
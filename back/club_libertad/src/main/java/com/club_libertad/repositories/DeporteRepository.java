@@ -2,8 +2,36 @@ package com.club_libertad.repositories;
 
 import com.club_libertad.models.Deporte;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface DeporteRepository extends JpaRepository<Deporte, Long> {
+public interface DeporteRepository extends JpaRepository<Deporte, Long>, DeporteRepositoryCustom {
+    @Modifying
+    @Query("UPDATE Deporte d SET d.numeroSocios = d.numeroSocios + :cantidad WHERE d.id = :id")
+    int sumarSocios(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM persona_deporte WHERE deporte_id = :deporteId", nativeQuery = true)
+    int deletePersonasByDeporteId(@Param("deporteId") Long deporteId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Deporte d WHERE d.id = :id")
+    int deleteDeporteById(@Param("id") Long id);
+
+    // Corrige los contadores que no coinciden con persona_deporte
+    @Modifying
+    @Query(value = """
+            UPDATE deporte d SET numero_socios = x.cantidad
+            FROM (
+                SELECT d2.id, COUNT(pd.persona_id) AS cantidad
+                FROM deporte d2
+                LEFT JOIN persona_deporte pd ON pd.deporte_id = d2.id
+                GROUP BY d2.id
+            ) x
+            WHERE d.id = x.id AND d.numero_socios <> x.cantidad
+            """, nativeQuery = true)
+    int recalcularNumeroSocios();
 }
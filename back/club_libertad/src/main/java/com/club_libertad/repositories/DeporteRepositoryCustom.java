@@ -0,0 +1,19 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.CategoriaPersona;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface DeporteRepositoryCustom {
+    record CambioDeportes(int personas, int asociadas, int desasociadas, int inscripcionesDadasDeBaja,
+                          int inscripcionesReactivadas, int inscripcionesCreadas) {}
+
+    /**
+     * Pasa las personas asociadas al deporte origen (opcionalmente filtradas por categoria y/o ids) al destino,
+     * en persona_deporte y en inscripcion. Con destinoId null solo las da de baja del origen; con
+     * mantenerEnOrigen las agrega al destino sin quitarlas del origen. No toca deporte.numero_socios.
+     */
+    CambioDeportes cambiarDeporte(Long origenId, Long destinoId, CategoriaPersona categoria, Collection<Long> personaIds,
+                                  boolean mantenerEnOrigen, LocalDate fecha);
+}
@@ -0,0 +1,110 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.CategoriaPersona;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cambios de plantel en bloque: cada paso es una sola sentencia sobre todas las personas afectadas.
+ * Las filas de persona_deporte del origen se bloquean al seleccionarlas, asi una asociacion individual
+ * concurrente espera a que termine el cambio en vez de contarse dos veces.
+ */
+public class DeporteRepositoryImpl implements DeporteRepositoryCustom {
+    private static final String SELECCIONAR = """
+            SELECT pd.persona_id
+            FROM persona_deporte pd
+            JOIN persona p ON p.id = pd.persona_id
+            WHERE pd.deporte_id = ?
+              AND (?::varchar IS NULL OR p.categoria = ?::varchar)
+              AND (?::bigint[] IS NULL OR pd.persona_id = ANY(?::bigint[]))
+            ORDER BY pd.persona_id
+            FOR UPDATE OF pd
+            """;
+
+    private static final String ASOCIAR = """
+            INSERT INTO persona_deporte (persona_id, deporte_id)
+            SELECT x.persona_id, ? FROM unnest(?::bigint[]) AS x(persona_id)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String DESASOCIAR = "DELETE FROM persona_deporte WHERE deporte_id = ? AND persona_id = ANY(?::bigint[])";
+
+    private static final String DAR_BAJA_INSCRIPCIONES = """
+            UPDATE inscripcion SET fecha_baja = ?
+            WHERE deporte_id = ? AND persona_id = ANY(?::bigint[]) AND fecha_baja IS NULL
+            """;
+
+    // Igual que InscripcionService.saveInscripcion: si la persona ya estuvo inscripta se reactiva esa inscripcion
+    private static final String REACTIVAR_INSCRIPCIONES = """
+            UPDATE inscripcion SET fecha_baja = NULL
+            WHERE deporte_id = ? AND persona_id = ANY(?::bigint[]) AND fecha_baja IS NOT NULL
+            """;
+
+    private static final String CREAR_INSCRIPCIONES = """
+            INSERT INTO inscripcion (persona_id, deporte_id, fecha_inscripcion)
+            SELECT x.persona_id, ?, ? FROM unnest(?::bigint[]) AS x(persona_id)
+            WHERE NOT EXISTS (SELECT 1 FROM inscripcion i WHERE i.persona_id = x.persona_id AND i.deporte_id = ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DeporteRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public CambioDeportes cambiarDeporte(Long origenId, Long destinoId, CategoriaPersona categoria, Collection<Long> personaIds,
+                                         boolean mantenerEnOrigen, LocalDate fecha) {
+        String nombreCategoria = categoria != null ? categoria.name() : null;
+        Long[] filtroIds = personaIds != null ? personaIds.toArray(Long[]::new) : null;
+        List<Long> seleccionadas = jdbcTemplate.query(SELECCIONAR, ps -> {
+            Array ids = filtroIds != null ? ps.getConnection().createArrayOf("bigint", filtroIds) : null;
+            ps.setLong(1, origenId);
+            ps.setString(2, nombreCategoria);
+            ps.setString(3, nombreCategoria);
+            ps.setArray(4, ids);
+            ps.setArray(5, ids);
+        }, (rs, i) -> rs.getLong(1));
+        if (seleccionadas.isEmpty()) {
+            return new CambioDeportes(0, 0, 0, 0, 0, 0);
+        }
+
+        Long[] ids = seleccionadas.toArray(Long[]::new);
+        int asociadas = 0, desasociadas = 0, bajas = 0, reactivadas = 0, creadas = 0;
+        if (destinoId != null) {
+            asociadas = jdbcTemplate.update(ASOCIAR, ps -> {
+                ps.setLong(1, destinoId);
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+            });
+        }
+        if (!mantenerEnOrigen) {
+            desasociadas = jdbcTemplate.update(DESASOCIAR, ps -> {
+                ps.setLong(1, origenId);
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+            });
+            bajas = jdbcTemplate.update(DAR_BAJA_INSCRIPCIONES, ps -> {
+                ps.setDate(1, Date.valueOf(fecha));
+                ps.setLong(2, origenId);
+                ps.setArray(3, ps.getConnection().createArrayOf("bigint", ids));
+            });
+        }
+        if (destinoId != null) {
+            reactivadas = jdbcTemplate.update(REACTIVAR_INSCRIPCIONES, ps -> {
+                ps.setLong(1, destinoId);
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+            });
+            creadas = jdbcTemplate.update(CREAR_INSCRIPCIONES, ps -> {
+                ps.setLong(1, destinoId);
+                ps.setDate(2, Date.valueOf(fecha));
+                ps.setArray(3, ps.getConnection().createArrayOf("bigint", ids));
+                ps.setLong(4, destinoId);
+            });
+        }
+        return new CambioDeportes(ids.length, asociadas, desasociadas, bajas, reactivadas, creadas);
+    }
+}
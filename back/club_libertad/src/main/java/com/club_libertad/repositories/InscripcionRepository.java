@@ -1,10 +1,15 @@
 package com.club_libertad.repositories;
 
 import com.club_libertad.models.Inscripcion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,8 +17,44 @@ import java.util.Optional;
 public interface InscripcionRepository extends JpaRepository<Inscripcion, Long> {
     @Query("SELECT i FROM Inscripcion i WHERE i.fechaBaja IS NULL")
     List<Inscripcion> findAllActive();
+
+    // Inscripciones activas que todavia no tienen cuota para el periodo (anti-join contra uk_cuota_persona_deporte_periodo)
+    @Query("SELECT i FROM Inscripcion i JOIN FETCH i.deporteId d JOIN FETCH i.personaId p LEFT JOIN FETCH p.promocion " +
+            "WHERE i.fechaBaja IS NULL AND NOT EXISTS (" +
+            "SELECT 1 FROM Cuota c WHERE c.personaId = i.personaId AND c.deporteId = i.deporteId AND c.periodo = :periodo)")
+    List<Inscripcion> findActiveSinCuotaEnPeriodo(@Param("periodo") LocalDate periodo);
+
+    // Igual que la anterior pero paginada por id (keyset) para procesar en lotes
+    @Query("SELECT i FROM Inscripcion i JOIN FETCH i.deporteId d JOIN FETCH i.personaId p LEFT JOIN FETCH p.promocion " +
+            "WHERE i.fechaBaja IS NULL AND i.id > :ultimoId AND NOT EXISTS (" +
+            "SELECT 1 FROM Cuota c WHERE c.personaId = i.personaId AND c.deporteId = i.deporteId AND c.periodo = :periodo) " +
+            "ORDER BY i.id")
+    List<Inscripcion> findActiveSinCuotaEnPeriodoDesde(@Param("periodo") LocalDate periodo, @Param("ultimoId") Long ultimoId, Pageable pageable);
+
+    @Query("SELECT i FROM Inscripcion i JOIN FETCH i.deporteId d JOIN FETCH i.personaId p LEFT JOIN FETCH p.promocion " +
+            "WHERE i.fechaBaja IS NULL AND i.deporteId.id = :deporteId AND NOT EXISTS (" +
+            "SELECT 1 FROM Cuota c WHERE c.personaId = i.personaId AND c.deporteId = i.deporteId AND c.periodo = :periodo)")
+    List<Inscripcion> findActiveSinCuotaEnPeriodoPorDeporte(@Param("periodo") LocalDate periodo, @Param("deporteId") Long deporteId);
+
+    // Inscripciones vigentes en algun momento del mes (alta hasta fin de mes, baja posterior al primer dia) y sin cuota para el periodo
+    @Query("SELECT i FROM Inscripcion i JOIN FETCH i.deporteId d JOIN FETCH i.personaId p LEFT JOIN FETCH p.promocion " +
+            "WHERE i.fechaInscripcion <= :finMes AND (i.fechaBaja IS NULL OR i.fechaBaja > :periodo) AND NOT EXISTS (" +
+            "SELECT 1 FROM Cuota c WHERE c.personaId = i.personaId AND c.deporteId = i.deporteId AND c.periodo = :periodo)")
+    List<Inscripcion> findElegiblesSinCuotaEnPeriodo(@Param("periodo") LocalDate periodo, @Param("finMes") LocalDate finMes);
+
+    @Query("SELECT i FROM Inscripcion i JOIN FETCH i.deporteId WHERE i.personaId.id = :personaId AND i.fechaBaja IS NULL ORDER BY i.fechaInscripcion")
+    List<Inscripcion> findActivasByPersonaIdConDeporte(@Param("personaId") Long personaId);
+
+    @Query("SELECT DISTINCT i.deporteId.id FROM Inscripcion i WHERE i.fechaBaja IS NULL")
+    List<Long> findDeporteIdsConInscripcionesActivas();
     
-    void deleteByPersonaId_Id(Long personaId);
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Inscripcion i WHERE i.personaId.id IN :personaIds")
+    int deleteByPersonaIds(@Param("personaIds") Collection<Long> personaIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Inscripcion i WHERE i.deporteId.id = :deporteId")
+    int deleteByDeporteId(@Param("deporteId") Long deporteId);
 
     Optional<Inscripcion> findByPersonaId_IdAndDeporteId_IdAndFechaBajaIsNull(Long personaId, Long deporteId);
     Optional<Inscripcion> findByPersonaId_IdAndDeporteId_Id(Long personaId, Long deporteId);
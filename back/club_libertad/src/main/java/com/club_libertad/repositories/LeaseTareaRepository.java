@@ -0,0 +1,37 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.LeaseTarea;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// Cada operacion confirma en su propia transaccion para que el lease sea visible enseguida en las demas instancias
+@Repository
+public interface LeaseTareaRepository extends JpaRepository<LeaseTarea, String> {
+    // Toma el lease si no existe, si esta vencido o si ya era de este propietario. Devuelve 1 si se obtuvo
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "INSERT INTO lease_tarea (nombre, propietario, adquirido_en, expira_en) " +
+            "VALUES (:nombre, :propietario, now(), now() + make_interval(secs => :segundos)) " +
+            "ON CONFLICT (nombre) DO UPDATE SET propietario = EXCLUDED.propietario, adquirido_en = EXCLUDED.adquirido_en, expira_en = EXCLUDED.expira_en " +
+            "WHERE lease_tarea.expira_en < now() OR lease_tarea.propietario = EXCLUDED.propietario", nativeQuery = true)
+    int adquirir(@Param("nombre") String nombre, @Param("propietario") String propietario, @Param("segundos") long segundos);
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE lease_tarea SET expira_en = now() + make_interval(secs => :segundos) " +
+            "WHERE nombre = :nombre AND propietario = :propietario", nativeQuery = true)
+    int renovar(@Param("nombre") String nombre, @Param("propietario") String propietario, @Param("segundos") long segundos);
+
+    // Se conserva el lease al menos hasta adquirido_en + minimo, para que otra instancia cuyo cron dispare
+    // unos instantes despues no vuelva a ejecutar la misma tarea
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE lease_tarea SET expira_en = GREATEST(now(), adquirido_en + make_interval(secs => :segundosMinimos)) " +
+            "WHERE nombre = :nombre AND propietario = :propietario", nativeQuery = true)
+    int liberar(@Param("nombre") String nombre, @Param("propietario") String propietario, @Param("segundosMinimos") long segundosMinimos);
+}
@@ -0,0 +1,9 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.OperacionPago;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OperacionPagoRepository extends JpaRepository<OperacionPago, String>, OperacionPagoRepositoryCustom {
+}
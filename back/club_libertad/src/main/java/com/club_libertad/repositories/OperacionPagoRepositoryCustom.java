@@ -0,0 +1,11 @@
+package com.club_libertad.repositories;
+
+import java.util.Collection;
+
+public interface OperacionPagoRepositoryCustom {
+    /**
+     * Toma un lock consultivo por clave de idempotencia hasta el fin de la transaccion. Un reenvio
+     * concurrente del mismo lote espera aca y, al leer las operaciones despues, ve las ya registradas.
+     */
+    void bloquearClaves(Collection<String> claves);
+}
@@ -0,0 +1,30 @@
+package com.club_libertad.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+
+public class OperacionPagoRepositoryImpl implements OperacionPagoRepositoryCustom {
+    // Ordenado por el hash (el valor que se bloquea) para que dos lotes con claves que colisionan no se crucen
+    private static final String BLOQUEAR_CLAVES = """
+            SELECT pg_advisory_xact_lock(hashtext('operacion_pago'), hashtext(k))
+            FROM unnest(?::text[]) AS k ORDER BY hashtext(k)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OperacionPagoRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void bloquearClaves(Collection<String> claves) {
+        if (claves.isEmpty()) {
+            return;
+        }
+        Object[] valores = claves.toArray();
+        jdbcTemplate.query(BLOQUEAR_CLAVES,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", valores)),
+                rs -> {});
+    }
+}
@@ -1,10 +1,28 @@
 package com.club_libertad.repositories;
 
 import com.club_libertad.models.Pago;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface PagoRepository extends JpaRepository<Pago, Long> {
-	void deleteBySocioId_Id(Long socioId);
+public interface PagoRepository extends JpaRepository<Pago, Long>, JpaSpecificationExecutor<Pago>, PagoRepositoryCustom {
+	// Recorre idx_pago_socio_fecha_id en orden inverso
+	@Query("SELECT p FROM Pago p WHERE p.socioId.id = :socioId ORDER BY p.fechaPago DESC, p.id DESC")
+	List<Pago> findRecientesBySocioId(@Param("socioId") Long socioId, Pageable pageable);
+
+	@Modifying(flushAutomatically = true)
+	@Query("DELETE FROM Pago p WHERE p.socioId.id IN :socioIds")
+	int deleteBySocioIds(@Param("socioIds") Collection<Long> socioIds);
+
+	@Query("SELECT DISTINCT p.fechaPago FROM Pago p WHERE p.socioId.id IN :socioIds")
+	List<LocalDate> findFechasPagoBySocioIds(@Param("socioIds") Collection<Long> socioIds);
 }
@@ -0,0 +1,13 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Pago;
+
+import java.util.List;
+
+public interface PagoRepositoryCustom {
+    /**
+     * Inserta los pagos en un lote JDBC. Los ids se reservan antes de la secuencia de la columna identity
+     * (una consulta para todo el lote) y se asignan a cada Pago de la lista.
+     */
+    void insertPagos(List<Pago> pagos);
+}
@@ -0,0 +1,45 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Pago;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+public class PagoRepositoryImpl implements PagoRepositoryCustom {
+    private static final String RESERVAR_IDS =
+            "SELECT nextval(pg_get_serial_sequence('pago', 'id')) FROM generate_series(1, ?)";
+
+    private static final String INSERT = """
+            INSERT INTO pago (id, socio_id, fecha_pago, monto_total, cuota_entrenador, cuota_seguro, cuota_social,
+                              metodo_pago, observaciones)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PagoRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertPagos(List<Pago> pagos) {
+        if (pagos.isEmpty()) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(RESERVAR_IDS, Long.class, pagos.size());
+        for (int i = 0; i < pagos.size(); i++) {
+            pagos.get(i).setId(ids.get(i));
+        }
+        jdbcTemplate.batchUpdate(INSERT, pagos, pagos.size(), (ps, pago) -> {
+            ps.setLong(1, pago.getId());
+            ps.setLong(2, pago.getSocioIdValue());
+            ps.setObject(3, pago.getFechaPago());
+            ps.setBigDecimal(4, pago.getMontoTotal());
+            ps.setBigDecimal(5, pago.getCuotaEntrenador());
+            ps.setBigDecimal(6, pago.getCuotaSeguro());
+            ps.setBigDecimal(7, pago.getCuotaSocial());
+            ps.setString(8, pago.getMetodoPago() != null ? pago.getMetodoPago().name() : null);
+            ps.setString(9, pago.getObservaciones());
+        });
+    }
+}
@@ -1,10 +1,70 @@
 package com.club_libertad.repositories;
 
 import com.club_libertad.models.Persona;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface PersonaRepository extends JpaRepository<Persona, Long> {
+public interface PersonaRepository extends JpaRepository<Persona, Long>, JpaSpecificationExecutor<Persona>, PersonaRepositoryCustom {
 	java.util.Optional<Persona> findByDni(String dni);
+
+	// Listado completo y detalle: los deportes vienen en la misma consulta (socioResponsableId y promocionId salen de la FK)
+	@EntityGraph(attributePaths = "deportes")
+	@Query("SELECT p FROM Persona p")
+	List<Persona> findAllConDeportes();
+
+	@EntityGraph(attributePaths = "deportes")
+	@Query("SELECT p FROM Persona p WHERE p.id = :id")
+	java.util.Optional<Persona> findConDeportesById(@Param("id") Long id);
+
+	List<Persona> findByDniIn(Collection<String> dnis);
+
+	@Query("SELECT p.id FROM Persona p WHERE p.dni = :dni")
+	java.util.Optional<Long> findIdByDni(@Param("dni") String dni);
+
+	@Query("SELECT p.id FROM Persona p WHERE p.id IN :ids")
+	List<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+
+	// Usa idx_persona_socio_responsable
+	@Modifying(flushAutomatically = true)
+	@Query("UPDATE Persona p SET p.socioResponsable = NULL WHERE p.socioResponsable.id IN :socioIds")
+	int desvincularDependientes(@Param("socioIds") Collection<Long> socioIds);
+
+	// Descuenta de deporte.numero_socios exactamente las filas que se borraron
+	@Modifying(flushAutomatically = true)
+	@Query(value = """
+			WITH borradas AS (
+			    DELETE FROM persona_deporte WHERE persona_id IN (:personaIds) RETURNING deporte_id
+			)
+			UPDATE deporte d SET numero_socios = d.numero_socios - x.cantidad
+			FROM (SELECT deporte_id, COUNT(*) AS cantidad FROM borradas GROUP BY deporte_id) x
+			WHERE d.id = x.deporte_id
+			""", nativeQuery = true)
+	int deleteDeportesByPersonaIds(@Param("personaIds") Collection<Long> personaIds);
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "INSERT INTO persona_deporte (persona_id, deporte_id) VALUES (:personaId, :deporteId) ON CONFLICT DO NOTHING", nativeQuery = true)
+	int insertDeporte(@Param("personaId") Long personaId, @Param("deporteId") Long deporteId);
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "DELETE FROM persona_deporte WHERE persona_id = :personaId AND deporte_id = :deporteId", nativeQuery = true)
+	int deleteDeporte(@Param("personaId") Long personaId, @Param("deporteId") Long deporteId);
+
+	@Query(value = "SELECT p FROM Persona p JOIN p.deportes d WHERE d.id = :deporteId",
+			countQuery = "SELECT COUNT(p) FROM Persona p JOIN p.deportes d WHERE d.id = :deporteId")
+	Page<Persona> findByDeporteId(@Param("deporteId") Long deporteId, Pageable pageable);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("DELETE FROM Persona p WHERE p.id IN :ids")
+	int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,45 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.CategoriaPersona;
+import com.club_libertad.models.Persona;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface PersonaRepositoryCustom {
+    /**
+     * Coincidencia de la busqueda global. Las personas dadas de baja solo existen en registro:
+     * en ese caso personaId es null y dadoDeBaja es true.
+     */
+    record CoincidenciaPersona(Long personaId, Long registroId, String nombre, String apellido, String dni,
+                               Boolean activo, boolean dadoDeBaja, double puntaje) {}
+
+    // Integrante de un grupo familiar; profundidad 0 es el socio responsable de todo el grupo
+    record MiembroGrupo(Long id, Long socioResponsableId, int profundidad, String nombre, String apellido, String dni,
+                        CategoriaPersona categoria, Boolean activo) {}
+
+    /**
+     * Grupo familiar de la persona en una sola consulta recursiva: sube por socio_responsable_id hasta el
+     * socio que no depende de nadie y baja desde ahi a todos sus dependientes, directos e indirectos.
+     */
+    List<MiembroGrupo> findGrupoFamiliar(Long personaId);
+
+    /**
+     * Personas cuyas cuotas puede pagar cada socio: el mismo y todos sus dependientes, directos e indirectos,
+     * con la misma profundidad maxima que el grupo familiar. Un socio que no existe no aparece en el mapa.
+     */
+    Map<Long, Set<Long>> findIdsSocioYDependientes(Collection<Long> socioIds);
+
+    // Busqueda tolerante a errores de tipeo por apellido/nombre, o por digitos del DNI si el texto es numerico
+    List<CoincidenciaPersona> buscarPorTexto(String texto, int limite);
+
+    /**
+     * Inserta las personas en una sola sentencia, omitiendo las que ya existen por DNI (ON CONFLICT DO NOTHING).
+     * Devuelve solo las que se insertaron, con su id.
+     */
+    List<Persona> insertPersonasIfAbsent(List<Persona> personas);
+
+    Map<String, Long> findIdsByDnis(Collection<String> dnis);
+}
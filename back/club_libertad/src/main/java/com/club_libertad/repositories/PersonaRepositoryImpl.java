@@ -0,0 +1,228 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.enums.CategoriaPersona;
+import com.club_libertad.models.Persona;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Busqueda con pg_trgm sobre persona y registro. Los indices GIN de trigramas los crea
+ * {@code IndicesBusquedaPersona} al iniciar, porque ddl-auto no genera indices por expresion.
+ */
+public class PersonaRepositoryImpl implements PersonaRepositoryCustom {
+    private static final String BUSCAR_POR_NOMBRE = """
+            SELECT * FROM (
+                SELECT p.id AS persona_id, NULL::bigint AS registro_id, p.nombre, p.apellido, p.dni, p.activo, false AS dado_de_baja,
+                       word_similarity(?, lower(p.apellido || ' ' || p.nombre)) AS puntaje
+                FROM persona p
+                WHERE ? <% lower(p.apellido || ' ' || p.nombre)
+                UNION ALL
+                SELECT NULL, r.id, r.nombre, r.apellido, r.dni, NULL, true,
+                       word_similarity(?, lower(r.apellido || ' ' || r.nombre))
+                FROM registro r
+                WHERE ? <% lower(r.apellido || ' ' || r.nombre)
+                  AND NOT EXISTS (SELECT 1 FROM persona p WHERE p.dni = r.dni)
+            ) coincidencias
+            ORDER BY puntaje DESC, apellido, nombre
+            LIMIT ?
+            """;
+
+    // Primero los DNI que empiezan con los digitos buscados y luego los que los contienen
+    private static final String BUSCAR_POR_DNI = """
+            SELECT * FROM (
+                SELECT p.id AS persona_id, NULL::bigint AS registro_id, p.nombre, p.apellido, p.dni, p.activo, false AS dado_de_baja,
+                       CASE WHEN p.dni LIKE ? || '%' THEN 1.0 ELSE 0.5 END AS puntaje
+                FROM persona p
+                WHERE p.dni LIKE '%' || ? || '%'
+                UNION ALL
+                SELECT NULL, r.id, r.nombre, r.apellido, r.dni, NULL, true,
+                       CASE WHEN r.dni LIKE ? || '%' THEN 1.0 ELSE 0.5 END
+                FROM registro r
+                WHERE r.dni LIKE '%' || ? || '%'
+                  AND NOT EXISTS (SELECT 1 FROM persona p WHERE p.dni = r.dni)
+            ) coincidencias
+            ORDER BY puntaje DESC, dni
+            LIMIT ?
+            """;
+
+    // RETURNING informa las filas insertadas sin depender de los conteos del batch JDBC
+    // (con reWriteBatchedInserts el driver devuelve SUCCESS_NO_INFO por fila)
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO persona (nombre, apellido, dni, fecha_nacimiento, email, telefono, direccion, categoria,
+                                 fecha_registro, activo, socio_responsable_id, promocion_id)
+            SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::date[], ?::text[], ?::text[], ?::text[], ?::text[],
+                                 ?::timestamptz[], ?::boolean[], ?::bigint[], ?::bigint[])
+            ON CONFLICT (dni) DO NOTHING
+            RETURNING id, dni
+            """;
+
+    // La profundidad maxima y el camino evitan recorrer sin fin si algun dato formara un ciclo
+    private static final int PROFUNDIDAD_MAXIMA = 20;
+
+    private static final String GRUPO_FAMILIAR = """
+            WITH RECURSIVE ancestros AS (
+                SELECT id, socio_responsable_id, 0 AS nivel FROM persona WHERE id = ?
+                UNION ALL
+                SELECT p.id, p.socio_responsable_id, a.nivel + 1
+                FROM persona p JOIN ancestros a ON p.id = a.socio_responsable_id
+                WHERE a.nivel < %1$d
+            ), raiz AS (
+                SELECT id FROM ancestros ORDER BY nivel DESC LIMIT 1
+            ), grupo AS (
+                SELECT r.id, 0 AS profundidad, ARRAY[r.id] AS camino FROM raiz r
+                UNION ALL
+                SELECT p.id, g.profundidad + 1, g.camino || p.id
+                FROM persona p JOIN grupo g ON p.socio_responsable_id = g.id
+                WHERE g.profundidad < %1$d AND NOT p.id = ANY(g.camino)
+            )
+            SELECT p.id, p.socio_responsable_id, g.profundidad, p.nombre, p.apellido, p.dni, p.categoria, p.activo
+            FROM grupo g JOIN persona p ON p.id = g.id
+            ORDER BY g.profundidad, p.apellido, p.nombre, p.id
+            """.formatted(PROFUNDIDAD_MAXIMA);
+
+    // Misma bajada que el grupo familiar, desde cada socio pedido en vez de desde la raiz
+    private static final String SOCIOS_Y_DEPENDIENTES = """
+            WITH RECURSIVE a_cargo AS (
+                SELECT p.id AS socio_id, p.id, 0 AS profundidad, ARRAY[p.id] AS camino
+                FROM persona p WHERE p.id = ANY(?::bigint[])
+                UNION ALL
+                SELECT a.socio_id, p.id, a.profundidad + 1, a.camino || p.id
+                FROM persona p JOIN a_cargo a ON p.socio_responsable_id = a.id
+                WHERE a.profundidad < %1$d AND NOT p.id = ANY(a.camino)
+            )
+            SELECT socio_id, id FROM a_cargo
+            """.formatted(PROFUNDIDAD_MAXIMA);
+
+    private static final RowMapper<CoincidenciaPersona> MAPPER = (rs, i) -> new CoincidenciaPersona(
+            rs.getObject("persona_id", Long.class),
+            rs.getObject("registro_id", Long.class),
+            rs.getString("nombre"),
+            rs.getString("apellido"),
+            rs.getString("dni"),
+            rs.getObject("activo", Boolean.class),
+            rs.getBoolean("dado_de_baja"),
+            rs.getDouble("puntaje"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String umbralSimilitud;
+
+    public PersonaRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                 @Value("${app.busqueda.umbralSimilitud:0.4}") double umbralSimilitud) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.umbralSimilitud = String.valueOf(umbralSimilitud);
+    }
+
+    @Override
+    public List<MiembroGrupo> findGrupoFamiliar(Long personaId) {
+        return jdbcTemplate.query(GRUPO_FAMILIAR, (rs, i) -> new MiembroGrupo(
+                rs.getLong("id"),
+                rs.getObject("socio_responsable_id", Long.class),
+                rs.getInt("profundidad"),
+                rs.getString("nombre"),
+                rs.getString("apellido"),
+                rs.getString("dni"),
+                CategoriaPersona.valueOf(rs.getString("categoria")),
+                rs.getObject("activo", Boolean.class)), personaId);
+    }
+
+    @Override
+    public Map<Long, Set<Long>> findIdsSocioYDependientes(Collection<Long> socioIds) {
+        Map<Long, Set<Long>> permitidas = new HashMap<>();
+        if (socioIds.isEmpty()) {
+            return permitidas;
+        }
+        Object[] ids = socioIds.toArray();
+        jdbcTemplate.query(SOCIOS_Y_DEPENDIENTES,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+                rs -> {
+                    permitidas.computeIfAbsent(rs.getLong("socio_id"), k -> new HashSet<>()).add(rs.getLong("id"));
+                });
+        return permitidas;
+    }
+
+    @Override
+    public List<Persona> insertPersonasIfAbsent(List<Persona> personas) {
+        if (personas.isEmpty()) {
+            return List.of();
+        }
+        int n = personas.size();
+        Object[] nombres = new Object[n], apellidos = new Object[n], dnis = new Object[n], nacimientos = new Object[n],
+                emails = new Object[n], telefonos = new Object[n], direcciones = new Object[n], categorias = new Object[n],
+                registros = new Object[n], activos = new Object[n], socios = new Object[n], promociones = new Object[n];
+        Map<String, Persona> porDni = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Persona persona = personas.get(i);
+            nombres[i] = persona.getNombre();
+            apellidos[i] = persona.getApellido();
+            dnis[i] = persona.getDni();
+            nacimientos[i] = persona.getFechaNacimiento() != null ? Date.valueOf(persona.getFechaNacimiento()) : null;
+            emails[i] = persona.getEmail();
+            telefonos[i] = persona.getTelefono();
+            direcciones[i] = persona.getDireccion();
+            categorias[i] = persona.getCategoria().name();
+            registros[i] = Timestamp.from(persona.getFechaRegistro().toInstant());
+            activos[i] = persona.getActivo();
+            socios[i] = persona.getSocioResponsable() != null ? persona.getSocioResponsable().getId() : null;
+            promociones[i] = persona.getPromocion() != null ? persona.getPromocion().getId() : null;
+            porDni.put(persona.getDni(), persona);
+        }
+        List<Persona> insertadas = new ArrayList<>();
+        jdbcTemplate.query(INSERT_IF_ABSENT, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("text", nombres));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", apellidos));
+            ps.setArray(3, ps.getConnection().createArrayOf("text", dnis));
+            ps.setArray(4, ps.getConnection().createArrayOf("date", nacimientos));
+            ps.setArray(5, ps.getConnection().createArrayOf("text", emails));
+            ps.setArray(6, ps.getConnection().createArrayOf("text", telefonos));
+            ps.setArray(7, ps.getConnection().createArrayOf("text", direcciones));
+            ps.setArray(8, ps.getConnection().createArrayOf("text", categorias));
+            ps.setArray(9, ps.getConnection().createArrayOf("timestamptz", registros));
+            ps.setArray(10, ps.getConnection().createArrayOf("boolean", activos));
+            ps.setArray(11, ps.getConnection().createArrayOf("bigint", socios));
+            ps.setArray(12, ps.getConnection().createArrayOf("bigint", promociones));
+        }, rs -> {
+            Persona persona = porDni.get(rs.getString("dni"));
+            persona.setId(rs.getLong("id"));
+            insertadas.add(persona);
+        });
+        return insertadas;
+    }
+
+    @Override
+    public Map<String, Long> findIdsByDnis(Collection<String> dnis) {
+        Map<String, Long> ids = new HashMap<>();
+        if (dnis.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query("SELECT id, dni FROM persona WHERE dni = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", dnis.toArray())),
+                rs -> {
+                    ids.put(rs.getString("dni"), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    // Debe ejecutarse dentro de una transaccion: el umbral se fija con set_config local a la transaccion
+    @Override
+    public List<CoincidenciaPersona> buscarPorTexto(String texto, int limite) {
+        String digitos = texto.replace(".", "").replace(" ", "");
+        if (digitos.matches("[0-9]+")) {
+            return jdbcTemplate.query(BUSCAR_POR_DNI, MAPPER, digitos, digitos, digitos, digitos, limite);
+        }
+        String normalizado = texto.trim().toLowerCase();
+        // El umbral por defecto de <% (0.6) no tolera errores de tipeo en apellidos cortos
+        jdbcTemplate.query("SELECT set_config('pg_trgm.word_similarity_threshold', ?, true)", rs -> {}, umbralSimilitud);
+        return jdbcTemplate.query(BUSCAR_POR_NOMBRE, MAPPER, normalizado, normalizado, normalizado, normalizado, limite);
+    }
+}
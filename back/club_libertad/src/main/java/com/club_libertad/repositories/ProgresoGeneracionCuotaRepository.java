@@ -0,0 +1,13 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.ProgresoGeneracionCuota;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface ProgresoGeneracionCuotaRepository extends JpaRepository<ProgresoGeneracionCuota, Long> {
+    Optional<ProgresoGeneracionCuota> findByPeriodo(LocalDate periodo);
+}
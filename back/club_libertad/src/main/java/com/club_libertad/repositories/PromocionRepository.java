@@ -2,8 +2,14 @@ package com.club_libertad.repositories;
 
 import com.club_libertad.models.Promocion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface PromocionRepository extends JpaRepository<Promocion, Long> {
+    @Query("SELECT p.promocion FROM Persona p WHERE p.id = :personaId")
+    Optional<Promocion> findByPersonaId(@Param("personaId") Long personaId);
 }
@@ -2,11 +2,37 @@ package com.club_libertad.repositories;
 
 import com.club_libertad.models.Registro;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RegistroRepository extends JpaRepository<Registro, Long> {
+public interface RegistroRepository extends JpaRepository<Registro, Long>, RegistroRepositoryCustom {
     Optional<Registro> findByDni(String dni);
+
+    List<Registro> findByDniIn(Collection<String> dnis);
+
+    // Marca la baja en el registro de las personas; la observacion solo se pisa si se informa
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Registro r SET r.fechaBaja = :fechaBaja, r.observacionBaja = COALESCE(:observacionBaja, r.observacionBaja) " +
+            "WHERE r.dni IN (SELECT p.dni FROM Persona p WHERE p.id IN :personaIds)")
+    int registrarBaja(@Param("personaIds") Collection<Long> personaIds,
+                      @Param("fechaBaja") ZonedDateTime fechaBaja,
+                      @Param("observacionBaja") String observacionBaja);
+
+    // Alterna la baja del registro del DNI sin leerlo antes: la marca (la observacion solo se pisa si se informa) o la quita
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE registro SET " +
+            "observacion_baja = CASE WHEN fecha_baja IS NULL THEN COALESCE(CAST(:observacionBaja AS text), observacion_baja) END, " +
+            "fecha_baja = CASE WHEN fecha_baja IS NULL THEN CAST(:fechaBaja AS timestamptz) END " +
+            "WHERE dni = :dni", nativeQuery = true)
+    int alternarBaja(@Param("dni") String dni,
+                     @Param("fechaBaja") ZonedDateTime fechaBaja,
+                     @Param("observacionBaja") String observacionBaja);
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Registro;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RegistroRepositoryCustom {
+    // Inserta los registros en un batch JDBC, omitiendo los DNI que ya estan registrados
+    void insertRegistrosIfAbsent(List<Registro> registros);
+
+    // Devuelve el id generado, o vacio si el DNI ya estaba registrado
+    Optional<Long> insertRegistroIfAbsent(Registro registro);
+}
@@ -0,0 +1,42 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Registro;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+public class RegistroRepositoryImpl implements RegistroRepositoryCustom {
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO registro (nombre, apellido, dni, fecha_registro)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (dni) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RegistroRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<Long> insertRegistroIfAbsent(Registro registro) {
+        return jdbcTemplate.queryForList(INSERT_IF_ABSENT + " RETURNING id", Long.class,
+                registro.getNombre(), registro.getApellido(), registro.getDni(), Timestamp.from(registro.getFechaRegistro().toInstant()))
+                .stream().findFirst();
+    }
+
+    @Override
+    public void insertRegistrosIfAbsent(List<Registro> registros) {
+        if (registros.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, registros, registros.size(), (ps, registro) -> {
+            ps.setString(1, registro.getNombre());
+            ps.setString(2, registro.getApellido());
+            ps.setString(3, registro.getDni());
+            ps.setTimestamp(4, Timestamp.from(registro.getFechaRegistro().toInstant()));
+        });
+    }
+}
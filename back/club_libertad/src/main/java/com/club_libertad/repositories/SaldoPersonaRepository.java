@@ -0,0 +1,17 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.SaldoPersona;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface SaldoPersonaRepository extends JpaRepository<SaldoPersona, Long>, SaldoPersonaRepositoryCustom {
+    @Modifying
+    @Query("DELETE FROM SaldoPersona s WHERE s.personaId IN :personaIds")
+    int deleteByPersonaIds(@Param("personaIds") Collection<Long> personaIds);
+}
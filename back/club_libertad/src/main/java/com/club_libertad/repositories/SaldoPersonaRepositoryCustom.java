@@ -0,0 +1,23 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Cuota;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface SaldoPersonaRepositoryCustom {
+    /**
+     * Suma al saldo de cada persona las cuotas recien generadas (todas en estado GENERADA)
+     * y ajusta el periodo impago mas antiguo.
+     */
+    void sumarCuotasGeneradas(List<Cuota> cuotas);
+
+    // Recalcula el saldo de las personas indicadas a partir de sus cuotas
+    void recalcular(Collection<Long> personaIds);
+
+    // Recalcula el saldo de las personas con cuotas del deporte en el periodo
+    void recalcularPorDeportePeriodo(Long deporteId, LocalDate periodo);
+
+    void recalcularTodos();
+}
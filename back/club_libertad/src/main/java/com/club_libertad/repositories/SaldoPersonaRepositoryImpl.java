@@ -0,0 +1,94 @@
+package com.club_libertad.repositories;
+
+import com.club_libertad.models.Cuota;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SaldoPersonaRepositoryImpl implements SaldoPersonaRepositoryCustom {
+    private static final String SUMAR_CUOTAS = """
+            INSERT INTO saldo_persona (persona_id, saldo_pendiente, cuotas_vencidas, periodo_impago_mas_antiguo, fecha_actualizacion)
+            VALUES (?, ?, 0, ?, now())
+            ON CONFLICT (persona_id) DO UPDATE SET
+                saldo_pendiente = saldo_persona.saldo_pendiente + EXCLUDED.saldo_pendiente,
+                periodo_impago_mas_antiguo = LEAST(saldo_persona.periodo_impago_mas_antiguo, EXCLUDED.periodo_impago_mas_antiguo),
+                fecha_actualizacion = now()
+            """;
+
+    private static final String RECALCULAR = """
+            INSERT INTO saldo_persona (persona_id, saldo_pendiente, cuotas_vencidas, periodo_impago_mas_antiguo, fecha_actualizacion)
+            SELECT p.id,
+                   COALESCE(SUM(c.monto) FILTER (WHERE c.estado <> 'PAGADA'), 0),
+                   COUNT(c.id) FILTER (WHERE c.estado = 'VENCIDA'),
+                   MIN(c.periodo) FILTER (WHERE c.estado <> 'PAGADA'),
+                   now()
+            FROM persona p
+            LEFT JOIN cuota c ON c.persona_id = p.id
+            %s
+            GROUP BY p.id
+            ON CONFLICT (persona_id) DO UPDATE SET
+                saldo_pendiente = EXCLUDED.saldo_pendiente,
+                cuotas_vencidas = EXCLUDED.cuotas_vencidas,
+                periodo_impago_mas_antiguo = EXCLUDED.periodo_impago_mas_antiguo,
+                fecha_actualizacion = EXCLUDED.fecha_actualizacion
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public SaldoPersonaRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                      @Value("${app.cuotas.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    private record Delta(Long personaId, BigDecimal monto, LocalDate periodo) {}
+
+    @Override
+    public void sumarCuotasGeneradas(List<Cuota> cuotas) {
+        if (cuotas.isEmpty()) {
+            return;
+        }
+        // Un solo upsert por persona aunque tenga varias cuotas nuevas
+        Map<Long, Delta> porPersona = new LinkedHashMap<>();
+        for (Cuota cuota : cuotas) {
+            Long personaId = cuota.getPersonaId().getId();
+            porPersona.merge(personaId, new Delta(personaId, cuota.getMonto(), cuota.getPeriodo()), (a, b) -> new Delta(
+                    personaId,
+                    a.monto().add(b.monto()),
+                    a.periodo().isBefore(b.periodo()) ? a.periodo() : b.periodo()));
+        }
+        jdbcTemplate.batchUpdate(SUMAR_CUOTAS, new ArrayList<>(porPersona.values()), batchSize, (ps, delta) -> {
+            ps.setLong(1, delta.personaId());
+            ps.setBigDecimal(2, delta.monto());
+            ps.setObject(3, delta.periodo());
+        });
+    }
+
+    @Override
+    public void recalcular(Collection<Long> personaIds) {
+        if (personaIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(RECALCULAR.formatted("WHERE p.id = ANY(?)"),
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", personaIds.toArray())));
+    }
+
+    @Override
+    public void recalcularPorDeportePeriodo(Long deporteId, LocalDate periodo) {
+        jdbcTemplate.update(RECALCULAR.formatted("WHERE p.id IN (SELECT persona_id FROM cuota WHERE deporte_id = ? AND periodo = ?)"),
+                deporteId, periodo);
+    }
+
+    @Override
+    public void recalcularTodos() {
+        jdbcTemplate.update(RECALCULAR.formatted(""));
+    }
+}
@@ -32,6 +32,12 @@ public class BackupService {
 
     private static final String BACKUP_DIR = "backups";
 
+    private final LeaseService leaseService;
+
+    public BackupService(LeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
     public static class BackupInfo {
         public String fileName;
         public long sizeBytes;
@@ -174,9 +180,11 @@ public class BackupService {
 
     @Scheduled(cron = "0 0 0 1 * *")
     public void createMonthlyBackup() {
-        try {
-            createBackup();
-        } catch (Exception ignored) {
-        }
+        leaseService.ejecutarConLease("backup-mensual", () -> {
+            try {
+                createBackup();
+            } catch (Exception ignored) {
+            }
+        });
     }
 }
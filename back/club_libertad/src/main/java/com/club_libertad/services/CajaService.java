@@ -0,0 +1,145 @@
+package com.club_libertad.services;
+
+import com.club_libertad.enums.PeriodoCaja;
+import com.club_libertad.models.Pago;
+import com.club_libertad.repositories.CajaDiariaRepository;
+import com.club_libertad.repositories.CajaDiariaRepositoryCustom.TotalCaja;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caja diaria: totales cobrados por dia, metodo de pago y componente de la cuota (caja_diaria).
+ * Se mantiene de forma incremental al registrar cada pago, de modo que los resumenes de dia, semana o
+ * mes suman a lo sumo unas decenas de filas. Si los totales se desfasan (por ejemplo al borrar pagos)
+ * se reconstruyen desde la tabla pago.
+ */
+@Service
+public class CajaService {
+    private static final Logger log = LoggerFactory.getLogger(CajaService.class);
+
+    private final CajaDiariaRepository cajaDiariaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final int paralelismoReconstruccion;
+
+    public CajaService(CajaDiariaRepository cajaDiariaRepository,
+                       TransactionTemplate transactionTemplate,
+                       EntityManager entityManager,
+                       @Value("${app.caja.paralelismo:4}") int paralelismo,
+                       @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximoPool) {
+        this.cajaDiariaRepository = cajaDiariaRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        // Se deja al menos una conexion del pool libre para las peticiones web
+        this.paralelismoReconstruccion = Math.max(1, Math.min(paralelismo, maximoPool - 1));
+    }
+
+    public record ResumenCaja(PeriodoCaja periodo, LocalDate desde, LocalDate hasta, List<TotalCaja> porMetodo, TotalCaja total) {}
+
+    public record ResultadoReconstruccion(LocalDate desde, LocalDate hasta, int dias, long duracionMs) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarSiVacio() {
+        if (cajaDiariaRepository.count() == 0) {
+            cajaDiariaRepository.rangoFechasPagos().ifPresent(rango -> reconstruir(rango.desde(), rango.hasta()));
+        }
+    }
+
+    // Se ejecuta dentro de la transaccion del pago: el total del dia y el pago se confirman juntos
+    @Transactional
+    public void registrarPagos(List<Pago> pagos) {
+        cajaDiariaRepository.sumarPagos(pagos);
+    }
+
+    // Recalcula dentro de la transaccion actual los dias de pagos que se eliminaron
+    @Transactional
+    public void recalcularDias(Collection<LocalDate> fechas) {
+        entityManager.flush();
+        fechas.stream().sorted().forEach(cajaDiariaRepository::recalcularDia);
+    }
+
+    @Transactional(readOnly = true)
+    public ResumenCaja getResumen(LocalDate fecha, PeriodoCaja periodo) {
+        LocalDate desde = switch (periodo) {
+            case DIA -> fecha;
+            case SEMANA -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MES -> fecha.withDayOfMonth(1);
+        };
+        LocalDate hasta = switch (periodo) {
+            case DIA -> fecha;
+            case SEMANA -> desde.plusDays(6);
+            case MES -> YearMonth.from(fecha).atEndOfMonth();
+        };
+        List<TotalCaja> porMetodo = cajaDiariaRepository.totalesPorMetodo(desde, hasta);
+        TotalCaja total = new TotalCaja("TOTAL", 0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+        for (TotalCaja t : porMetodo) {
+            total = new TotalCaja("TOTAL",
+                    total.cantidadPagos() + t.cantidadPagos(),
+                    total.totalEntrenador().add(t.totalEntrenador()),
+                    total.totalSeguro().add(t.totalSeguro()),
+                    total.totalSocial().add(t.totalSocial()),
+                    total.montoTotal().add(t.montoTotal()));
+        }
+        return new ResumenCaja(periodo, desde, hasta, porMetodo, total);
+    }
+
+    /**
+     * Recalcula los totales de cada dia del rango desde la tabla pago. Cada dia es una transaccion
+     * independiente en un hilo virtual; la cantidad de dias simultaneos se limita a app.caja.paralelismo
+     * (acotado por el pool de Hikari).
+     */
+    public ResultadoReconstruccion reconstruir(LocalDate desde, LocalDate hasta) {
+        long inicio = System.currentTimeMillis();
+        Semaphore permisos = new Semaphore(paralelismoReconstruccion);
+        List<Future<?>> futuros = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+                LocalDate fecha = dia;
+                futuros.add(executor.submit(() -> {
+                    permisos.acquire();
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> cajaDiariaRepository.recalcularDia(fecha));
+                    } finally {
+                        permisos.release();
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        for (Future<?> futuro : futuros) {
+            try {
+                futuro.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconstruccion de caja interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error al reconstruir la caja: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        long duracionMs = System.currentTimeMillis() - inicio;
+        log.info("Caja diaria reconstruida del {} al {} ({} dias) en {} ms", desde, hasta, futuros.size(), duracionMs);
+        return new ResultadoReconstruccion(desde, hasta, futuros.size(), duracionMs);
+    }
+}
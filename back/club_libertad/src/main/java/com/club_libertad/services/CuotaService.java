@@ -2,57 +2,126 @@ package com.club_libertad.services;
 
 import com.club_libertad.dtos.CuotaDTO;
 import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.enums.EstadoProceso;
 import com.club_libertad.models.Cuota;
 import com.club_libertad.models.Deporte;
 import com.club_libertad.models.Inscripcion;
 import com.club_libertad.models.Persona;
+import com.club_libertad.models.ProgresoGeneracionCuota;
 import com.club_libertad.models.Promocion;
 import com.club_libertad.repositories.CuotaRepository;
+import com.club_libertad.repositories.CuotaRepositoryCustom;
 import com.club_libertad.repositories.DeporteRepository;
 import com.club_libertad.repositories.InscripcionRepository;
 import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.ProgresoGeneracionCuotaRepository;
+import com.club_libertad.repositories.PromocionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 @Service
 public class CuotaService {
+    private static final Logger log = LoggerFactory.getLogger(CuotaService.class);
+
     private final CuotaRepository cuotaRepository;
     private final InscripcionRepository inscripcionRepository;
     private final PersonaRepository personaRepository;
     private final DeporteRepository deporteRepository;
+    private final PromocionRepository promocionRepository;
+    private final ProgresoGeneracionCuotaRepository progresoGeneracionCuotaRepository;
+    private final TarifaService tarifaService;
+    private final SaldoService saldoService;
+    private final LeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanioLoteGeneracion;
+    private final int paralelismoGeneracion;
     
-    public CuotaService(CuotaRepository cuotaRepository, InscripcionRepository inscripcionRepository, PersonaRepository personaRepository, DeporteRepository deporteRepository) {
+    public CuotaService(CuotaRepository cuotaRepository, InscripcionRepository inscripcionRepository, PersonaRepository personaRepository, DeporteRepository deporteRepository,
+                        PromocionRepository promocionRepository,
+                        ProgresoGeneracionCuotaRepository progresoGeneracionCuotaRepository,
+                        TarifaService tarifaService,
+                        SaldoService saldoService,
+                        LeaseService leaseService,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${app.cuotas.chunkSize:1000}") int tamanioLoteGeneracion,
+                        @Value("${app.cuotas.paralelismo:${spring.datasource.hikari.maximum-pool-size:10}}") int paralelismo,
+                        @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximoPool) {
         this.cuotaRepository = cuotaRepository;
         this.inscripcionRepository = inscripcionRepository;
         this.personaRepository = personaRepository;
         this.deporteRepository = deporteRepository;
+        this.promocionRepository = promocionRepository;
+        this.progresoGeneracionCuotaRepository = progresoGeneracionCuotaRepository;
+        this.tarifaService = tarifaService;
+        this.saldoService = saldoService;
+        this.leaseService = leaseService;
+        this.transactionTemplate = transactionTemplate;
+        this.tamanioLoteGeneracion = tamanioLoteGeneracion;
+        // Se deja al menos una conexion del pool libre para las peticiones web
+        this.paralelismoGeneracion = Math.max(1, Math.min(paralelismo, maximoPool - 1));
     }
 
-    // Método auxiliar para calcular monto con descuentos de promociones
-    private BigDecimal aplicarDescuentoPromocion(BigDecimal montoOriginal, Promocion promocion) {
-        if (promocion == null) {
-            return montoOriginal;
-        }
-        
-        BigDecimal descuentoTotal = BigDecimal.ZERO;
-        if (promocion.getActivo() != null && promocion.getActivo()) {
-            if (promocion.getTipoDescuento().name().equals("PORCENTAJE")) {
-                BigDecimal descuentoPorcentual = montoOriginal.multiply(promocion.getDescuento()).divide(BigDecimal.valueOf(100));
-                descuentoTotal = descuentoTotal.add(descuentoPorcentual);
-            } else { // MONTO_FIJO
-                descuentoTotal = descuentoTotal.add(promocion.getDescuento());
-            }
-        }
-        
-        
-        BigDecimal montoFinal = montoOriginal.subtract(descuentoTotal);
-        return montoFinal.compareTo(BigDecimal.ZERO) > 0 ? montoFinal : BigDecimal.ZERO;
+    private record ResultadoLote(Long ultimaInscripcionId, int leidas, int insertadas) {}
+
+    public record ResultadoPeriodo(LocalDate periodo, int cuotasGeneradas, long duracionMs) {}
+
+    public record ResultadoParticion(Long deporteId, int cuotasGeneradas, long duracionMs, double cuotasPorSegundo) {}
+
+    public record AltaCuota(Long id, boolean creada) {}
+
+    // Copia los componentes y el monto final (con la promocion de la persona) desde la matriz de tarifas
+    private void aplicarImportes(Cuota cuota, Deporte deporte, Promocion promocion) {
+        TarifaService.Tarifa tarifa = tarifaService.obtenerTarifa(deporte, promocion);
+        cuota.setCuotaEntrenador(tarifa.cuotaEntrenador());
+        cuota.setCuotaSeguro(tarifa.cuotaSeguro());
+        cuota.setCuotaSocial(tarifa.cuotaSocial());
+        cuota.setMonto(tarifa.monto());
+    }
+
+    // Inserta las cuotas que falten y suma las efectivamente creadas al saldo de cada persona
+    private int insertarCuotas(List<Cuota> nuevasCuotas) {
+        List<Cuota> insertadas = cuotaRepository.insertCuotasIfAbsent(nuevasCuotas);
+        saldoService.registrarCuotasGeneradas(insertadas);
+        return insertadas.size();
+    }
+
+    private Cuota construirCuotaMensual(Inscripcion inscripcion, LocalDate periodo, LocalDate fechaVencimiento, LocalDate fechaGeneracion) {
+        Cuota nuevaCuota = new Cuota();
+        nuevaCuota.setPersonaId(inscripcion.getPersonaId());
+        nuevaCuota.setDeporteId(inscripcion.getDeporteId());
+        nuevaCuota.setPeriodo(periodo);
+        // Aplicar descuentos de promociones si la persona los tiene
+        aplicarImportes(nuevaCuota, inscripcion.getDeporteId(), inscripcion.getPersonaId().getPromocion());
+        nuevaCuota.setEstado(EstadoCuota.GENERADA);
+        nuevaCuota.setFechaVencimiento(fechaVencimiento);
+        nuevaCuota.setFechaGeneracion(fechaGeneracion);
+        nuevaCuota.setConcepto("");
+        return nuevaCuota;
     }
 
     @Transactional(readOnly = true)
@@ -61,39 +130,56 @@ public class CuotaService {
     @Transactional(readOnly = true)
     public Optional<Cuota> getCuotaById(Long id){ return cuotaRepository.findById(id); }
 
+    /**
+     * Alta idempotente: inserta la cuota o devuelve la existente para la misma persona, deporte y periodo.
+     * Los importes salen de la fila del deporte en la matriz de tarifas y la sentencia elige la de la promocion
+     * de la persona, asi el caso normal es un solo viaje a la base de datos. Solo si la matriz no tiene esa
+     * combinacion (deporte o promocion recien creados) se cargan la persona y el deporte para calcularla.
+     * Devuelve vacio si la persona o el deporte no existen.
+     */
     @Transactional
-    public Optional<Long> saveCuota(CuotaDTO cuotaTransfer){
-        Cuota cuotaCreate = new Cuota();
-        Optional<Persona> personaOpt = personaRepository.findById(cuotaTransfer.getPersonaId());
-        Optional<Deporte> deporteOpt = deporteRepository.findById(cuotaTransfer.getDeporteId());
-        if(personaOpt.isEmpty() || deporteOpt.isEmpty()) {
+    public Optional<AltaCuota> saveCuota(CuotaDTO cuotaTransfer){
+        if(cuotaTransfer.getPersonaId() == null || cuotaTransfer.getDeporteId() == null || cuotaTransfer.getPeriodo() == null) {
             return Optional.empty();
         }
-        Persona personaExisting = personaOpt.get();
-        Deporte deporteExisting = deporteOpt.get();
-        cuotaCreate.setPersonaId(personaExisting);
-        cuotaCreate.setDeporteId(deporteExisting);
-        cuotaCreate.setPeriodo(cuotaTransfer.getPeriodo());
-        
-        BigDecimal cuotaEntrenador = deporteExisting.getCuotaEntrenador() != null ? deporteExisting.getCuotaEntrenador() : BigDecimal.ZERO;
-        BigDecimal cuotaSeguro = deporteExisting.getCuotaSeguro() != null ? deporteExisting.getCuotaSeguro() : BigDecimal.ZERO;
-        BigDecimal cuotaSocial = deporteExisting.getCuotaSocial() != null ? deporteExisting.getCuotaSocial() : BigDecimal.ZERO;
-        BigDecimal montoBase = cuotaEntrenador.add(cuotaSeguro).add(cuotaSocial);
-
-        Promocion promocion = personaExisting.getPromocion();
-        BigDecimal montoFinal = aplicarDescuentoPromocion(montoBase, promocion);
-
-        cuotaCreate.setCuotaEntrenador(cuotaEntrenador);
-        cuotaCreate.setCuotaSeguro(cuotaSeguro);
-        cuotaCreate.setCuotaSocial(cuotaSocial);
-        cuotaCreate.setMonto(montoFinal);
-        
-        cuotaCreate.setEstado(cuotaTransfer.getEstado());
-        if(cuotaTransfer.getFechaVencimiento() != null) cuotaCreate.setFechaVencimiento(cuotaTransfer.getFechaVencimiento());
-        if(cuotaTransfer.getConcepto() != null) cuotaCreate.setConcepto(cuotaTransfer.getConcepto());
-        cuotaCreate.setFechaGeneracion(LocalDate.now());
-        Cuota cuotaCreated = cuotaRepository.save(cuotaCreate);
-        return Optional.of(cuotaCreated.getId());
+        Map<Long, TarifaService.Tarifa> tarifas = tarifaService.tarifasDeDeporte(cuotaTransfer.getDeporteId());
+        Optional<CuotaRepositoryCustom.CuotaUpsert> cuota;
+        try {
+            cuota = upsertCuota(cuotaTransfer, tarifas);
+            if(cuota.isEmpty()) {
+                Optional<Persona> persona = personaRepository.findById(cuotaTransfer.getPersonaId());
+                Optional<Deporte> deporte = deporteRepository.findById(cuotaTransfer.getDeporteId());
+                if(persona.isEmpty() || deporte.isEmpty()) return Optional.empty();
+                Promocion promocion = persona.get().getPromocion();
+                Map<Long, TarifaService.Tarifa> tarifa = new HashMap<>();
+                tarifa.put(promocion != null ? promocion.getId() : null, tarifaService.obtenerTarifa(deporte.get(), promocion));
+                cuota = upsertCuota(cuotaTransfer, tarifa);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // El deporte de la matriz ya no existe (fk de cuota.deporte_id): la sentencia fallida invalida la transaccion
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return Optional.empty();
+        }
+        if(cuota.isPresent() && cuota.get().creada()) saldoService.recalcular(List.of(cuotaTransfer.getPersonaId()));
+        return cuota.map(c -> new AltaCuota(c.id(), c.creada()));
+    }
+
+    private Optional<CuotaRepositoryCustom.CuotaUpsert> upsertCuota(CuotaDTO cuotaTransfer, Map<Long, TarifaService.Tarifa> tarifas){
+        if(tarifas.isEmpty()) return Optional.empty();
+        List<CuotaRepositoryCustom.ImportesCuota> importes = tarifas.entrySet().stream()
+                .map(e -> new CuotaRepositoryCustom.ImportesCuota(e.getKey(), e.getValue().monto(),
+                        e.getValue().cuotaEntrenador(), e.getValue().cuotaSeguro(), e.getValue().cuotaSocial()))
+                .toList();
+        return cuotaRepository.upsertCuota(
+                cuotaTransfer.getPersonaId(),
+                cuotaTransfer.getDeporteId(),
+                cuotaTransfer.getPeriodo(),
+                cuotaTransfer.getEstado(),
+                cuotaTransfer.getFechaVencimiento(),
+                LocalDate.now(),
+                cuotaTransfer.getConcepto(),
+                importes
+        );
     }
 
     @Transactional
@@ -102,6 +188,7 @@ public class CuotaService {
         Optional<Cuota> cuota = getCuotaById(id);
         if(cuota.isPresent()){
             cuota.get().setEstado(estado);
+            saldoService.recalcular(List.of(cuota.get().getPersonaIdValue()));
             b = true;
         }
         return b;
@@ -113,65 +200,211 @@ public class CuotaService {
         LocalDate primerDiaMes = hoy.withDayOfMonth(1);
         LocalDate primerDiaMesSiguiente = YearMonth.from(hoy).plusMonths(1).atDay(1);
         
-        List<Inscripcion> inscripcionesActivas = inscripcionRepository.findAllActive();
-        int cuotasGeneradas = 0;
+        // Solo se traen las inscripciones activas sin cuota en el periodo, en una sola consulta
+        List<Inscripcion> inscripcionesPendientes = inscripcionRepository.findActiveSinCuotaEnPeriodo(primerDiaMes);
+        List<Cuota> nuevasCuotas = new ArrayList<>(inscripcionesPendientes.size());
+        for (Inscripcion inscripcion : inscripcionesPendientes) {
+            nuevasCuotas.add(construirCuotaMensual(inscripcion, primerDiaMes, primerDiaMesSiguiente, hoy));
+        }
         
-        for (Inscripcion inscripcion : inscripcionesActivas) {
-            Long personaId = inscripcion.getPersonaId().getId();
-            Long deporteId = inscripcion.getDeporteId().getId();
-            
-            Optional<Cuota> cuotaExistente = cuotaRepository.findByPersonaDeporteAndPeriodo(
-                personaId, deporteId, primerDiaMes
-            );
-            
-            if (cuotaExistente.isEmpty()) {
-                Cuota nuevaCuota = new Cuota();
-                nuevaCuota.setPersonaId(inscripcion.getPersonaId());
-                nuevaCuota.setDeporteId(inscripcion.getDeporteId());
-                nuevaCuota.setPeriodo(primerDiaMes);
-                
-                // Aplicar descuentos de promociones si la persona los tiene
-                BigDecimal cuotaEntrenador = inscripcion.getDeporteId().getCuotaEntrenador() != null ? inscripcion.getDeporteId().getCuotaEntrenador() : BigDecimal.ZERO;
-                BigDecimal cuotaSeguro = inscripcion.getDeporteId().getCuotaSeguro() != null ? inscripcion.getDeporteId().getCuotaSeguro() : BigDecimal.ZERO;
-                BigDecimal cuotaSocial = inscripcion.getDeporteId().getCuotaSocial() != null ? inscripcion.getDeporteId().getCuotaSocial() : BigDecimal.ZERO;
-                BigDecimal montoBase = cuotaEntrenador.add(cuotaSeguro).add(cuotaSocial);
-                Promocion promocion = inscripcion.getPersonaId().getPromocion();
-                BigDecimal montoFinal = aplicarDescuentoPromocion(montoBase, promocion);
-                nuevaCuota.setCuotaEntrenador(cuotaEntrenador);
-                nuevaCuota.setCuotaSeguro(cuotaSeguro);
-                nuevaCuota.setCuotaSocial(cuotaSocial);
-                nuevaCuota.setMonto(montoFinal);
-                
-                nuevaCuota.setEstado(EstadoCuota.GENERADA);
-                nuevaCuota.setFechaVencimiento(primerDiaMesSiguiente);
-                nuevaCuota.setFechaGeneracion(hoy);
-                nuevaCuota.setConcepto("");
-                
-                cuotaRepository.save(nuevaCuota);
-                cuotasGeneradas++;
+        return insertarCuotas(nuevasCuotas);
+    }
+
+    /**
+     * Genera las cuotas del mes actual en lotes de {@code tamanioLote} inscripciones.
+     * Cada lote se confirma en su propia transaccion (el contexto de persistencia se descarta
+     * al hacer commit) junto con el checkpoint en progreso_generacion_cuota, de modo que si la
+     * ejecucion se corta la siguiente retoma desde la ultima inscripcion confirmada.
+     */
+    public int generarCuotasMesActualPorLotes(Integer tamanioLote){
+        int tamanio = tamanioLote != null && tamanioLote > 0 ? tamanioLote : tamanioLoteGeneracion;
+        LocalDate hoy = LocalDate.now();
+        LocalDate primerDiaMes = hoy.withDayOfMonth(1);
+        LocalDate primerDiaMesSiguiente = YearMonth.from(hoy).plusMonths(1).atDay(1);
+
+        ProgresoGeneracionCuota progreso = transactionTemplate.execute(status -> iniciarProgreso(primerDiaMes));
+        Long ultimaInscripcionId = progreso.getUltimaInscripcionId();
+        if (ultimaInscripcionId > 0) {
+            log.info("Retomando generacion de cuotas del periodo {} desde la inscripcion {}", primerDiaMes, ultimaInscripcionId);
+        }
+
+        int cuotasGeneradas = 0;
+        while (true) {
+            Long desde = ultimaInscripcionId;
+            ResultadoLote lote = transactionTemplate.execute(status -> {
+                List<Inscripcion> inscripciones = inscripcionRepository.findActiveSinCuotaEnPeriodoDesde(primerDiaMes, desde, PageRequest.of(0, tamanio));
+                List<Cuota> nuevasCuotas = new ArrayList<>(inscripciones.size());
+                for (Inscripcion inscripcion : inscripciones) {
+                    nuevasCuotas.add(construirCuotaMensual(inscripcion, primerDiaMes, primerDiaMesSiguiente, hoy));
+                }
+                int insertadas = insertarCuotas(nuevasCuotas);
+                Long ultimoId = inscripciones.isEmpty() ? desde : inscripciones.get(inscripciones.size() - 1).getId();
+                registrarCheckpoint(primerDiaMes, ultimoId, insertadas, inscripciones.size() < tamanio);
+                return new ResultadoLote(ultimoId, inscripciones.size(), insertadas);
+            });
+            cuotasGeneradas += lote.insertadas();
+            ultimaInscripcionId = lote.ultimaInscripcionId();
+            if (lote.leidas() < tamanio) break;
+        }
+
+        return cuotasGeneradas;
+    }
+
+    /**
+     * Genera las cuotas del mes actual particionando las inscripciones activas por deporte.
+     * Cada particion corre en un hilo virtual con su propia transaccion y conexion; la cantidad
+     * de particiones simultaneas se limita a app.cuotas.paralelismo (acotado por el pool de Hikari).
+     */
+    public List<ResultadoParticion> generarCuotasMesActualEnParalelo(){
+        LocalDate hoy = LocalDate.now();
+        LocalDate primerDiaMes = hoy.withDayOfMonth(1);
+        LocalDate primerDiaMesSiguiente = YearMonth.from(hoy).plusMonths(1).atDay(1);
+
+        List<Long> deporteIds = inscripcionRepository.findDeporteIdsConInscripcionesActivas();
+        Semaphore permisos = new Semaphore(paralelismoGeneracion);
+        List<Future<ResultadoParticion>> futuros = new ArrayList<>(deporteIds.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long deporteId : deporteIds) {
+                futuros.add(executor.submit(() -> {
+                    permisos.acquire();
+                    try {
+                        return generarParticion(deporteId, primerDiaMes, primerDiaMesSiguiente, hoy);
+                    } finally {
+                        permisos.release();
+                    }
+                }));
             }
         }
-        
+
+        List<ResultadoParticion> resultados = new ArrayList<>(futuros.size());
+        for (Future<ResultadoParticion> futuro : futuros) {
+            try {
+                resultados.add(futuro.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Generacion de cuotas interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error al generar cuotas: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return resultados;
+    }
+
+    private ResultadoParticion generarParticion(Long deporteId, LocalDate periodo, LocalDate fechaVencimiento, LocalDate fechaGeneracion){
+        long inicio = System.currentTimeMillis();
+        Integer insertadas = transactionTemplate.execute(status -> {
+            List<Inscripcion> inscripciones = inscripcionRepository.findActiveSinCuotaEnPeriodoPorDeporte(periodo, deporteId);
+            List<Cuota> nuevasCuotas = new ArrayList<>(inscripciones.size());
+            for (Inscripcion inscripcion : inscripciones) {
+                nuevasCuotas.add(construirCuotaMensual(inscripcion, periodo, fechaVencimiento, fechaGeneracion));
+            }
+            return insertarCuotas(nuevasCuotas);
+        });
+        long duracionMs = System.currentTimeMillis() - inicio;
+        int cuotasGeneradas = insertadas != null ? insertadas : 0;
+        double cuotasPorSegundo = duracionMs > 0 ? cuotasGeneradas * 1000.0 / duracionMs : cuotasGeneradas;
+        log.info("Deporte {}: {} cuotas generadas en {} ms ({} cuotas/s)", deporteId, cuotasGeneradas, duracionMs, String.format("%.1f", cuotasPorSegundo));
+        return new ResultadoParticion(deporteId, cuotasGeneradas, duracionMs, cuotasPorSegundo);
+    }
+
+    /**
+     * Genera las cuotas faltantes para cada mes entre {@code desde} y {@code hasta} (inclusive).
+     * La elegibilidad de cada inscripcion se decide por su fechaInscripcion y fechaBaja en ese mes;
+     * cada periodo se inserta en lotes dentro de su propia transaccion y se informa al terminar.
+     */
+    public int generarCuotasRango(YearMonth desde, YearMonth hasta, Consumer<ResultadoPeriodo> progreso){
+        LocalDate hoy = LocalDate.now();
+        int cuotasGeneradas = 0;
+        for (YearMonth mes = desde; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+            LocalDate periodo = mes.atDay(1);
+            LocalDate finMes = mes.atEndOfMonth();
+            LocalDate fechaVencimiento = mes.plusMonths(1).atDay(1);
+            long inicio = System.currentTimeMillis();
+            Integer insertadas = transactionTemplate.execute(status -> {
+                List<Inscripcion> inscripciones = inscripcionRepository.findElegiblesSinCuotaEnPeriodo(periodo, finMes);
+                List<Cuota> nuevasCuotas = new ArrayList<>(inscripciones.size());
+                for (Inscripcion inscripcion : inscripciones) {
+                    nuevasCuotas.add(construirCuotaMensual(inscripcion, periodo, fechaVencimiento, hoy));
+                }
+                return insertarCuotas(nuevasCuotas);
+            });
+            int generadasPeriodo = insertadas != null ? insertadas : 0;
+            cuotasGeneradas += generadasPeriodo;
+            progreso.accept(new ResultadoPeriodo(periodo, generadasPeriodo, System.currentTimeMillis() - inicio));
+        }
         return cuotasGeneradas;
     }
 
+    private ProgresoGeneracionCuota iniciarProgreso(LocalDate periodo){
+        ZonedDateTime ahora = ZonedDateTime.now();
+        ProgresoGeneracionCuota progreso = progresoGeneracionCuotaRepository.findByPeriodo(periodo).orElseGet(() -> {
+            ProgresoGeneracionCuota nuevo = new ProgresoGeneracionCuota();
+            nuevo.setPeriodo(periodo);
+            nuevo.setEstado(EstadoProceso.COMPLETADO);
+            return nuevo;
+        });
+        // Una ejecucion completada se vuelve a recorrer desde el principio (pueden haberse reactivado inscripciones);
+        // una que quedo EN_CURSO se retoma desde su checkpoint
+        if (progreso.getEstado() == EstadoProceso.COMPLETADO) {
+            progreso.setUltimaInscripcionId(0L);
+            progreso.setCuotasGeneradas(0);
+            progreso.setEstado(EstadoProceso.EN_CURSO);
+            progreso.setFechaInicio(ahora);
+        }
+        progreso.setFechaActualizacion(ahora);
+        return progresoGeneracionCuotaRepository.save(progreso);
+    }
+
+    private void registrarCheckpoint(LocalDate periodo, Long ultimaInscripcionId, int insertadas, boolean completado){
+        progresoGeneracionCuotaRepository.findByPeriodo(periodo).ifPresent(progreso -> {
+            progreso.setUltimaInscripcionId(ultimaInscripcionId);
+            progreso.setCuotasGeneradas(progreso.getCuotasGeneradas() + insertadas);
+            progreso.setFechaActualizacion(ZonedDateTime.now());
+            if (completado) progreso.setEstado(EstadoProceso.COMPLETADO);
+        });
+    }
+
+    /**
+     * Actualiza en segundo plano los importes de las cuotas GENERADAS del deporte para el periodo,
+     * con un UPDATE por promocion (mas uno para las personas sin promocion) usando la matriz de tarifas.
+     */
+    @Async
+    @Transactional
+    public CompletableFuture<Integer> repreciarCuotasAbiertas(Long deporteId, LocalDate periodo){
+        Optional<Deporte> deporteOpt = deporteRepository.findById(deporteId);
+        if (deporteOpt.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        Deporte deporte = deporteOpt.get();
+        long inicio = System.currentTimeMillis();
+
+        TarifaService.Tarifa sinPromocion = tarifaService.obtenerTarifa(deporte, null);
+        int cuotasActualizadas = cuotaRepository.updateImportesSinPromocion(deporteId, periodo, EstadoCuota.GENERADA,
+                sinPromocion.cuotaEntrenador(), sinPromocion.cuotaSeguro(), sinPromocion.cuotaSocial(), sinPromocion.monto());
+        for (Promocion promocion : promocionRepository.findAll()) {
+            TarifaService.Tarifa tarifa = tarifaService.obtenerTarifa(deporte, promocion);
+            cuotasActualizadas += cuotaRepository.updateImportesPorPromocion(deporteId, periodo, EstadoCuota.GENERADA, promocion.getId(),
+                    tarifa.cuotaEntrenador(), tarifa.cuotaSeguro(), tarifa.cuotaSocial(), tarifa.monto());
+        }
+
+        saldoService.recalcularPorDeportePeriodo(deporteId, periodo);
+        log.info("Deporte {}: {} cuotas abiertas del periodo {} repreciadas en {} ms", deporteId, cuotasActualizadas, periodo, System.currentTimeMillis() - inicio);
+        return CompletableFuture.completedFuture(cuotasActualizadas);
+    }
+
     @Transactional
     public int actualizarCuotasVencidas(){
         LocalDate hoy = LocalDate.now();
-        List<Cuota> cuotas = cuotaRepository.findAll();
-        int cuotasVencidas = 0;
-        
-        for (Cuota cuota : cuotas) {
-            // Si la cuota está en GENERADA y su fecha de vencimiento es <= hoy, marcarla como VENCIDA
-            if (cuota.getEstado() == EstadoCuota.GENERADA && 
-                cuota.getFechaVencimiento() != null && 
-                !cuota.getFechaVencimiento().isAfter(hoy)) {
-                cuota.setEstado(EstadoCuota.VENCIDA);
-                cuotasVencidas++;
-            }
-        }
-        
+        long inicio = System.currentTimeMillis();
+        // Si la cuota está en GENERADA y su fecha de vencimiento es <= hoy, marcarla como VENCIDA (un solo UPDATE que tambien actualiza saldo_persona)
+        int cuotasVencidas = cuotaRepository.marcarVencidasHasta(hoy);
+        log.info("Cuotas vencidas: {} actualizadas en {} ms", cuotasVencidas, System.currentTimeMillis() - inicio);
         return cuotasVencidas;
     }
 
+    @Scheduled(cron = "${app.cuotas.vencidasCron:0 5 0 * * *}")
+    public void actualizarCuotasVencidasProgramado(){
+        leaseService.ejecutarConLease("cuotas-vencidas", () -> transactionTemplate.execute(status -> actualizarCuotasVencidas()));
+    }
+
 }
@@ -1,25 +1,59 @@
 package com.club_libertad.services;
 
+import com.club_libertad.dtos.CambioDeportesDTO;
 import com.club_libertad.dtos.DeporteDTO;
+import com.club_libertad.exceptions.DeporteConCuotasException;
 import com.club_libertad.models.Deporte;
 import com.club_libertad.models.Persona;
+import com.club_libertad.repositories.CuotaRepository;
 import com.club_libertad.repositories.DeporteRepository;
+import com.club_libertad.repositories.DeporteRepositoryCustom.CambioDeportes;
+import com.club_libertad.repositories.InscripcionRepository;
+import com.club_libertad.repositories.PersonaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class DeporteService {
+    private static final Logger log = LoggerFactory.getLogger(DeporteService.class);
+
     private final DeporteRepository deporteRepository;
+    private final PersonaRepository personaRepository;
+    private final InscripcionRepository inscripcionRepository;
+    private final CuotaRepository cuotaRepository;
+    private final TarifaService tarifaService;
+    private final CuotaService cuotaService;
     
-    public DeporteService(DeporteRepository deporteRepository) {
+    public DeporteService(DeporteRepository deporteRepository, PersonaRepository personaRepository, InscripcionRepository inscripcionRepository, CuotaRepository cuotaRepository, TarifaService tarifaService, CuotaService cuotaService) {
         this.deporteRepository = deporteRepository;
+        this.personaRepository = personaRepository;
+        this.inscripcionRepository = inscripcionRepository;
+        this.cuotaRepository = cuotaRepository;
+        this.tarifaService = tarifaService;
+        this.cuotaService = cuotaService;
     }
 
+    public record PaginaPersonas(List<Persona> personas, int pagina, int tamanio, long total, boolean hayMas) {}
+
+    public record ResultadoCambioDeportes(int personas, int asociadas, int desasociadas, int inscripcionesDadasDeBaja,
+                                          int inscripcionesReactivadas, int inscripcionesCreadas) {}
+
     @Transactional(readOnly = true)
     public List<Deporte> getAllDeportes(){
         return deporteRepository.findAll();
@@ -44,11 +78,17 @@ public class DeporteService {
         deporteCreate.setCuotaSocial(cuotaSocial);
         deporteCreate.setCuotaMensual(cuotaEntrenador.add(cuotaSeguro).add(cuotaSocial));
         Deporte deporteCreated = deporteRepository.save(deporteCreate);
+        tarifaService.actualizarDeporte(deporteCreated);
         return Optional.of(deporteCreated.getId());
     }
 
     @Transactional
     public boolean updateDeporte(Long id, Deporte deporteUpdate){
+        return updateDeporte(id, deporteUpdate, false);
+    }
+
+    @Transactional
+    public boolean updateDeporte(Long id, Deporte deporteUpdate, boolean repreciarCuotas){
         boolean b = false;
         Optional<Deporte> deporte = getDeporteById(id);
         if(deporte.isPresent()){
@@ -62,37 +102,81 @@ public class DeporteService {
             BigDecimal cuotaSeguro = deporte.get().getCuotaSeguro() != null ? deporte.get().getCuotaSeguro() : BigDecimal.ZERO;
             BigDecimal cuotaSocial = deporte.get().getCuotaSocial() != null ? deporte.get().getCuotaSocial() : BigDecimal.ZERO;
             deporte.get().setCuotaMensual(cuotaEntrenador.add(cuotaSeguro).add(cuotaSocial));
+            tarifaService.actualizarDeporte(deporte.get());
+            boolean cambioPrecio = deporteUpdate.getCuotaEntrenador() != null || deporteUpdate.getCuotaSeguro() != null || deporteUpdate.getCuotaSocial() != null;
+            if (repreciarCuotas && cambioPrecio) {
+                // Se lanza despues del commit para que el job lea los precios nuevos y no bloquee el PATCH
+                LocalDate periodo = LocalDate.now().withDayOfMonth(1);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cuotaService.repreciarCuotasAbiertas(id, periodo);
+                    }
+                });
+            }
             b = true;
         }
         return b;
     }
 
+    // Lanza DeporteConCuotasException si el deporte ya facturo: las cuotas (y sus pagos) son historial contable
     @Transactional
     public boolean deleteDeporteById(Long id){
+        if(cuotaRepository.existsByDeporteId_Id(id)) {
+            log.warn("No se elimina el deporte {}: tiene cuotas generadas", id);
+            throw new DeporteConCuotasException(id);
+        }
         try {
-            Optional<Deporte> deporte = deporteRepository.findById(id);
-            if(deporte.isPresent()) {
-                // Remove associations with personas first
-                Deporte d = deporte.get();
-                for(Persona persona : d.getPersonas()) {
-                    persona.getDeportes().remove(d);
-                }
-                d.getPersonas().clear();
-                deporteRepository.flush();
-                // Now delete the deporte
-                deporteRepository.deleteById(id);
-                return true;
-            }
-            return false;
+            if(!deporteRepository.existsById(id)) return false;
+            // Asociaciones e inscripciones con una sentencia cada una, sin cargar las personas
+            deporteRepository.deletePersonasByDeporteId(id);
+            inscripcionRepository.deleteByDeporteId(id);
+            deporteRepository.deleteDeporteById(id);
+            tarifaService.eliminarDeporte(id);
+            return true;
         } catch (Exception e) {
             System.out.println("Error al eliminar deporte: " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Mueve (o copia, con mantenerEnOrigen) a las personas de un deporte a otro en una sola transaccion:
+     * persona_deporte, inscripciones y numeroSocios de ambos deportes. Vacio si alguno de los deportes no existe.
+     */
+    @Transactional
+    public Optional<ResultadoCambioDeportes> cambiarDeportes(CambioDeportesDTO cambio){
+        Long origenId = cambio.getDeporteOrigenId();
+        Long destinoId = cambio.getDeporteDestinoId();
+        if(!deporteRepository.existsById(origenId) || (destinoId != null && !deporteRepository.existsById(destinoId))) {
+            return Optional.empty();
+        }
+        LocalDate fecha = cambio.getFecha() != null ? cambio.getFecha() : LocalDate.now();
+        CambioDeportes resultado = deporteRepository.cambiarDeporte(origenId, destinoId, cambio.getCategoria(),
+                cambio.getPersonaIds(), cambio.isMantenerEnOrigen(), fecha);
+
+        // Los contadores se actualizan en orden de id: dos cambios cruzados (A->B y B->A) no se bloquean mutuamente
+        Map<Long, Integer> cambiosContador = new TreeMap<>();
+        if(resultado.asociadas() > 0) cambiosContador.merge(destinoId, resultado.asociadas(), Integer::sum);
+        if(resultado.desasociadas() > 0) cambiosContador.merge(origenId, -resultado.desasociadas(), Integer::sum);
+        cambiosContador.forEach(deporteRepository::sumarSocios);
+        return Optional.of(new ResultadoCambioDeportes(resultado.personas(), resultado.asociadas(), resultado.desasociadas(),
+                resultado.inscripcionesDadasDeBaja(), resultado.inscripcionesReactivadas(), resultado.inscripcionesCreadas()));
+    }
+
+    // Plantel paginado; la pagina se pide ya ordenada y el id desempata para que el orden sea estable
     @Transactional(readOnly = true)
-    public Set<Persona> getPersonasByDeporteId(Long deporteId){
-        Optional<Deporte> deporte = deporteRepository.findById(deporteId);
-        return deporte.map(Deporte::getPersonas).orElse(null);
+    public Optional<PaginaPersonas> getPersonasByDeporteId(Long deporteId, int pagina, int tamanio, Sort orden){
+        if(!deporteRepository.existsById(deporteId)) return Optional.empty();
+        Page<Persona> personas = personaRepository.findByDeporteId(deporteId, PageRequest.of(pagina, tamanio, orden.and(Sort.by("id"))));
+        return Optional.of(new PaginaPersonas(personas.getContent(), pagina, tamanio, personas.getTotalElements(), personas.hasNext()));
+    }
+
+    // Corrige numeroSocios al iniciar, por si la base se modifico por fuera de la aplicacion
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recalcularNumeroSocios(){
+        int corregidos = deporteRepository.recalcularNumeroSocios();
+        if(corregidos > 0) log.info("numeroSocios corregido en {} deportes", corregidos);
     }
 }
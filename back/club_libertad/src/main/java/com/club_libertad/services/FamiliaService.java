@@ -0,0 +1,123 @@
+package com.club_libertad.services;
+
+import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.models.Cuota;
+import com.club_libertad.repositories.CuotaRepository;
+import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.PersonaRepositoryCustom.MiembroGrupo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grupos familiares armados sobre Persona.socioResponsable. La composicion del grupo sale de una consulta
+ * recursiva y se guarda en cache por socio responsable (con un indice persona -> grupo); las cuotas abiertas
+ * se leen en cada pedido con una sola consulta para todo el grupo, porque cambian con cada pago.
+ * La cache se invalida despues del commit cuando una persona del grupo se crea, se modifica o se elimina,
+ * y cada entrada vence a los app.familias.ttlSegundos por si el cambio ocurrio en otra instancia.
+ */
+@Service
+public class FamiliaService {
+    private static final List<EstadoCuota> ESTADOS_ABIERTOS = List.of(EstadoCuota.GENERADA, EstadoCuota.VENCIDA);
+
+    private final PersonaRepository personaRepository;
+    private final CuotaRepository cuotaRepository;
+    private final long ttlMillis;
+    private final Map<Long, GrupoEnCache> gruposPorRaiz = new ConcurrentHashMap<>();
+    private final Map<Long, Long> raizPorPersona = new ConcurrentHashMap<>();
+
+    public FamiliaService(PersonaRepository personaRepository,
+                          CuotaRepository cuotaRepository,
+                          @Value("${app.familias.ttlSegundos:300}") long ttlSegundos) {
+        this.personaRepository = personaRepository;
+        this.cuotaRepository = cuotaRepository;
+        this.ttlMillis = ttlSegundos * 1000;
+    }
+
+    private record GrupoEnCache(List<MiembroGrupo> miembros, long creadoEn) {}
+
+    public record MiembroFamilia(MiembroGrupo persona, List<Cuota> cuotasAbiertas, BigDecimal saldoPendiente) {}
+
+    public record GrupoFamiliar(Long socioResponsableId, List<MiembroFamilia> miembros, BigDecimal saldoPendienteTotal) {}
+
+    @Transactional(readOnly = true)
+    public Optional<GrupoFamiliar> getGrupoFamiliar(Long personaId) {
+        List<MiembroGrupo> miembros = obtenerMiembros(personaId);
+        if (miembros.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<Long, List<Cuota>> cuotasPorPersona = new HashMap<>();
+        List<Long> ids = miembros.stream().map(MiembroGrupo::id).toList();
+        for (Cuota cuota : cuotaRepository.findAbiertasByPersonaIds(ids, ESTADOS_ABIERTOS)) {
+            cuotasPorPersona.computeIfAbsent(cuota.getPersonaIdValue(), k -> new ArrayList<>()).add(cuota);
+        }
+
+        List<MiembroFamilia> resultado = new ArrayList<>(miembros.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (MiembroGrupo miembro : miembros) {
+            List<Cuota> cuotas = cuotasPorPersona.getOrDefault(miembro.id(), List.of());
+            BigDecimal saldo = cuotas.stream().map(Cuota::getMonto).reduce(BigDecimal.ZERO, BigDecimal::add);
+            resultado.add(new MiembroFamilia(miembro, cuotas, saldo));
+            total = total.add(saldo);
+        }
+        return Optional.of(new GrupoFamiliar(miembros.get(0).id(), resultado, total));
+    }
+
+    private List<MiembroGrupo> obtenerMiembros(Long personaId) {
+        Long raiz = raizPorPersona.get(personaId);
+        GrupoEnCache enCache = raiz != null ? gruposPorRaiz.get(raiz) : null;
+        if (enCache != null && System.currentTimeMillis() - enCache.creadoEn() < ttlMillis) {
+            return enCache.miembros();
+        }
+
+        List<MiembroGrupo> miembros = personaRepository.findGrupoFamiliar(personaId);
+        if (!miembros.isEmpty()) {
+            Long nuevaRaiz = miembros.get(0).id();
+            if (enCache != null) descartarGrupo(raiz);
+            gruposPorRaiz.put(nuevaRaiz, new GrupoEnCache(List.copyOf(miembros), System.currentTimeMillis()));
+            miembros.forEach(m -> raizPorPersona.put(m.id(), nuevaRaiz));
+        }
+        return miembros;
+    }
+
+    /**
+     * Descarta los grupos de las personas indicadas cuando se confirme la transaccion actual. Se llama
+     * con la persona modificada y, si cambio de socio responsable, tambien con el socio anterior y el nuevo.
+     */
+    public void invalidar(Collection<Long> personaIds) {
+        List<Long> ids = List.copyOf(personaIds);
+        Runnable accion = () -> ids.forEach(id -> {
+            Long raiz = raizPorPersona.get(id);
+            if (raiz != null) descartarGrupo(raiz);
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private void descartarGrupo(Long raiz) {
+        GrupoEnCache grupo = gruposPorRaiz.remove(raiz);
+        if (grupo != null) {
+            grupo.miembros().forEach(m -> raizPorPersona.remove(m.id(), raiz));
+        }
+    }
+}
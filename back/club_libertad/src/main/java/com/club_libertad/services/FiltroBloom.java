@@ -0,0 +1,65 @@
+package com.club_libertad.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de tamanio fijo para cadenas cortas (DNI). {@link #puedeContener} nunca da falsos
+ * negativos; los falsos positivos rondan la probabilidad pedida mientras no se supere la capacidad.
+ * Los bits se marcan con operaciones atomicas, asi que admite altas concurrentes sin bloqueo.
+ */
+final class FiltroBloom {
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+    private final int cantidadHashes;
+
+    FiltroBloom(long capacidad, double probabilidadFalsoPositivo) {
+        long n = Math.max(1, capacidad);
+        long m = (long) Math.ceil(-n * Math.log(probabilidadFalsoPositivo) / (Math.log(2) * Math.log(2)));
+        this.cantidadBits = Math.max(64, m);
+        this.cantidadHashes = Math.max(1, (int) Math.round((double) cantidadBits / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((cantidadBits + 63) / 64));
+    }
+
+    void agregar(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= cantidadHashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, cantidadBits);
+            int indice = (int) (bit >>> 6);
+            long mascara = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = bits.get(indice);
+                if ((actual & mascara) != 0) break;
+            } while (!bits.compareAndSet(indice, actual, actual | mascara));
+        }
+    }
+
+    boolean puedeContener(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= cantidadHashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, cantidadBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a de 64 bits con una mezcla final para repartir bien valores numericos parecidos
+    private static long hash64(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,225 @@
+package com.club_libertad.services;
+
+import com.club_libertad.dtos.PagoDTO;
+import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.enums.MetodoPago;
+import com.club_libertad.models.Cuota;
+import com.club_libertad.models.Persona;
+import com.club_libertad.repositories.CuotaRepository;
+import com.club_libertad.repositories.PersonaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Importa transferencias bancarias desde un CSV (dni;fecha;monto;referencia, separado por ';' o ',').
+ * El archivo se lee linea a linea en lotes: por lote se resuelven todos los DNI y las cuotas impagas en
+ * dos consultas, y cada transferencia se asigna a las cuotas mas antiguas de la persona cuya suma coincide
+ * exactamente con el monto. Los pagos de cada lote se crean juntos con {@link PagoService#savePagosEnLote}
+ * (mismas validaciones que un pago individual, una transaccion por lote) y el resultado de cada linea se
+ * informa al terminar su lote, sin acumular el archivo en memoria.
+ */
+@Service
+public class ImportacionPagoService {
+    private static final List<EstadoCuota> ESTADOS_ABIERTOS = List.of(EstadoCuota.GENERADA, EstadoCuota.VENCIDA);
+    private static final DateTimeFormatter FECHA_LATAM = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // La marca decimal es el ultimo ',' o '.' seguido de exactamente dos digitos; el otro caracter separa miles
+    private static final Pattern DECIMAL_CON_COMA = Pattern.compile("\\d+,\\d{2}|\\d{1,3}(\\.\\d{3})+,\\d{2}");
+    private static final Pattern DECIMAL_CON_PUNTO = Pattern.compile("\\d+\\.\\d{2}|\\d{1,3}(,\\d{3})+\\.\\d{2}");
+    // Sin decimales solo se aceptan separadores de miles repetidos (1.500.000): "1.500" podria ser 1,5
+    private static final Pattern ENTERO = Pattern.compile("\\d+|\\d{1,3}(\\.\\d{3}){2,}|\\d{1,3}(,\\d{3}){2,}");
+
+    private final PersonaRepository personaRepository;
+    private final CuotaRepository cuotaRepository;
+    private final PagoService pagoService;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanioLote;
+
+    public ImportacionPagoService(PersonaRepository personaRepository,
+                                  CuotaRepository cuotaRepository,
+                                  PagoService pagoService,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${app.pagos.importacion.loteSize:200}") int tamanioLote) {
+        this.personaRepository = personaRepository;
+        this.cuotaRepository = cuotaRepository;
+        this.pagoService = pagoService;
+        this.transactionTemplate = transactionTemplate;
+        this.tamanioLote = tamanioLote;
+    }
+
+    public enum EstadoLinea {
+        IMPORTADO, FORMATO_INVALIDO, PERSONA_NO_ENCONTRADA, SIN_CUOTAS_ABIERTAS, MONTO_NO_COINCIDE, ERROR
+    }
+
+    public record ResultadoLinea(int linea, String dni, EstadoLinea estado, Long pagoId, List<Long> cuotaIds, String detalle) {}
+
+    private record Transferencia(int linea, String dni, LocalDate fecha, BigDecimal monto, String referencia) {}
+
+    private record DatosLote(Map<String, Long> personaIdPorDni, Map<Long, List<Cuota>> cuotasAbiertasPorPersona) {}
+
+    private record Asignacion(Transferencia transferencia, PagoDTO pago) {}
+
+    public void importar(InputStream archivo, Consumer<ResultadoLinea> resultado) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(archivo, StandardCharsets.UTF_8))) {
+            List<Transferencia> lote = new ArrayList<>(tamanioLote);
+            String linea;
+            int numero = 0;
+            while ((linea = reader.readLine()) != null) {
+                numero++;
+                if (linea.isBlank()) continue;
+                Transferencia transferencia = parsear(numero, linea, resultado);
+                if (transferencia == null) continue;
+                lote.add(transferencia);
+                if (lote.size() == tamanioLote) {
+                    procesarLote(lote, resultado);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) procesarLote(lote, resultado);
+        }
+    }
+
+    // Devuelve null si la linea es el encabezado o no tiene un formato valido (en ese caso ya se informo)
+    private Transferencia parsear(int numero, String linea, Consumer<ResultadoLinea> resultado) {
+        char separador = LectorCsv.separador(linea);
+        String[] campos = LectorCsv.campos(linea, separador);
+        String dni = campos[0].replace(".", "");
+        if (numero == 1 && !dni.matches("[0-9]+")) {
+            return null;
+        }
+        if (campos.length < 3 || !dni.matches("^[0-9]{7,8}$")) {
+            resultado.accept(new ResultadoLinea(numero, dni, EstadoLinea.FORMATO_INVALIDO, null, List.of(), "Se esperaba dni;fecha;monto[;referencia]"));
+            return null;
+        }
+        try {
+            String textoFecha = campos[1].trim();
+            LocalDate fecha = textoFecha.contains("/") ? LocalDate.parse(textoFecha, FECHA_LATAM) : LocalDate.parse(textoFecha);
+            BigDecimal monto = parsearMonto(campos[2]);
+            String referencia = campos.length > 3 ? campos[3].trim() : "";
+            return new Transferencia(numero, dni, fecha, monto, referencia);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            resultado.accept(new ResultadoLinea(numero, dni, EstadoLinea.FORMATO_INVALIDO, null, List.of(), e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Acepta 1234.50, 1234,50, 1.234,50, 1,234.50, 1234 y 1.234.567. Rechaza los montos en los que no se
+     * puede saber cual es la marca decimal (1.500, 1,5) en vez de adivinar.
+     */
+    static BigDecimal parsearMonto(String texto) {
+        String monto = texto.trim();
+        if (DECIMAL_CON_COMA.matcher(monto).matches()) {
+            return new BigDecimal(monto.replace(".", "").replace(',', '.'));
+        }
+        if (DECIMAL_CON_PUNTO.matcher(monto).matches()) {
+            return new BigDecimal(monto.replace(",", ""));
+        }
+        if (ENTERO.matcher(monto).matches()) {
+            return new BigDecimal(monto.replace(".", "").replace(",", ""));
+        }
+        throw new NumberFormatException("Monto ambiguo o invalido: " + texto);
+    }
+
+    private void procesarLote(List<Transferencia> lote, Consumer<ResultadoLinea> resultado) {
+        DatosLote datos = transactionTemplate.execute(status -> cargarDatosLote(lote));
+        Map<Integer, ResultadoLinea> resultados = new HashMap<>();
+        List<Asignacion> asignaciones = new ArrayList<>();
+        for (Transferencia transferencia : lote) {
+            asignar(transferencia, datos, resultados, asignaciones);
+        }
+
+        if (!asignaciones.isEmpty()) {
+            try {
+                List<PagoService.ResultadoPagoLote> pagos = pagoService.savePagosEnLote(asignaciones.stream().map(Asignacion::pago).toList());
+                for (int i = 0; i < asignaciones.size(); i++) {
+                    Transferencia t = asignaciones.get(i).transferencia();
+                    List<Long> cuotaIds = asignaciones.get(i).pago().getCuotaIds();
+                    PagoService.ResultadoPagoLote pago = pagos.get(i);
+                    resultados.put(t.linea(), pago.pagoId() != null
+                            ? new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.IMPORTADO, pago.pagoId(), cuotaIds, null)
+                            : new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.ERROR, null, cuotaIds, pago.error()));
+                }
+            } catch (RuntimeException e) {
+                // El lote se revirtio completo: ninguna de sus transferencias quedo registrada
+                for (Asignacion a : asignaciones) {
+                    Transferencia t = a.transferencia();
+                    resultados.put(t.linea(), new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.ERROR, null, a.pago().getCuotaIds(), e.getMessage()));
+                }
+            }
+        }
+        for (Transferencia transferencia : lote) {
+            resultado.accept(resultados.get(transferencia.linea()));
+        }
+    }
+
+    private DatosLote cargarDatosLote(List<Transferencia> lote) {
+        Set<String> dnis = lote.stream().map(Transferencia::dni).collect(Collectors.toSet());
+        Map<String, Long> personaIdPorDni = personaRepository.findByDniIn(dnis).stream()
+                .collect(Collectors.toMap(Persona::getDni, Persona::getId));
+        Map<Long, List<Cuota>> cuotasPorPersona = new HashMap<>();
+        if (!personaIdPorDni.isEmpty()) {
+            for (Cuota cuota : cuotaRepository.findAbiertasByPersonaIds(personaIdPorDni.values(), ESTADOS_ABIERTOS)) {
+                cuotasPorPersona.computeIfAbsent(cuota.getPersonaIdValue(), k -> new ArrayList<>()).add(cuota);
+            }
+        }
+        return new DatosLote(personaIdPorDni, cuotasPorPersona);
+    }
+
+    // Deja el resultado de la linea en resultados, o la asignacion a registrar si el monto coincide
+    private void asignar(Transferencia t, DatosLote datos, Map<Integer, ResultadoLinea> resultados, List<Asignacion> asignaciones) {
+        Long personaId = datos.personaIdPorDni().get(t.dni());
+        if (personaId == null) {
+            resultados.put(t.linea(), new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.PERSONA_NO_ENCONTRADA, null, List.of(), null));
+            return;
+        }
+        List<Cuota> abiertas = datos.cuotasAbiertasPorPersona().getOrDefault(personaId, new ArrayList<>());
+        if (abiertas.isEmpty()) {
+            resultados.put(t.linea(), new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.SIN_CUOTAS_ABIERTAS, null, List.of(), null));
+            return;
+        }
+
+        // Cuotas mas antiguas hasta cubrir el monto; solo se acepta si la suma coincide exactamente
+        List<Cuota> asignadas = new ArrayList<>();
+        BigDecimal acumulado = BigDecimal.ZERO;
+        for (Cuota cuota : abiertas) {
+            if (acumulado.compareTo(t.monto()) >= 0) break;
+            asignadas.add(cuota);
+            acumulado = acumulado.add(cuota.getMonto());
+        }
+        if (acumulado.compareTo(t.monto()) != 0) {
+            resultados.put(t.linea(), new ResultadoLinea(t.linea(), t.dni(), EstadoLinea.MONTO_NO_COINCIDE, null, List.of(),
+                    "El monto no coincide con las cuotas impagas mas antiguas (" + acumulado + ")"));
+            return;
+        }
+
+        List<Long> cuotaIds = asignadas.stream().map(Cuota::getId).toList();
+        PagoDTO pago = new PagoDTO();
+        pago.setSocioId(personaId);
+        pago.setFechaPago(t.fecha());
+        pago.setMetodoPago(MetodoPago.TRANSFERENCIA);
+        pago.setObservaciones(t.referencia().isEmpty() ? "Importado de extracto bancario" : "Importado de extracto bancario: " + t.referencia());
+        pago.setCuotaIds(cuotaIds);
+        // Las cuotas ya asignadas no se ofrecen a otra linea de la misma persona en el lote
+        abiertas.removeAll(asignadas);
+        asignaciones.add(new Asignacion(t, pago));
+    }
+}
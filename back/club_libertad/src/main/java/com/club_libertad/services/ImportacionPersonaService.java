@@ -0,0 +1,317 @@
+package com.club_libertad.services;
+
+import com.club_libertad.enums.CategoriaPersona;
+import com.club_libertad.exceptions.RegistroDuplicadoException;
+import com.club_libertad.models.Persona;
+import com.club_libertad.models.Promocion;
+import com.club_libertad.models.Registro;
+import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.PromocionRepository;
+import com.club_libertad.repositories.RegistroRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Alta masiva de personas desde un CSV con columnas
+ * dni;nombre;apellido;categoria;fechaNacimiento;email;telefono;direccion;socioResponsableDni;promocionId.
+ * El archivo se procesa en lotes, cada uno en su transaccion: los DNI se resuelven contra registro y persona
+ * en una consulta por tabla y las altas se insertan en batches JDBC. Un DNI que ya esta en registro se
+ * informa como duplicado con los datos del registro, igual que {@link RegistroDuplicadoException} en el alta
+ * individual, salvo que se pida usar el registro existente. Una fila cuyo socio responsable todavia no existe
+ * (viene mas adelante en el archivo) se reintenta al terminar de leerlo, hasta que una pasada no resuelva ninguna.
+ */
+@Service
+public class ImportacionPersonaService {
+    private static final DateTimeFormatter FECHA_LATAM = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final String PATRON_EMAIL = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
+    private static final String PATRON_TELEFONO = "^\\+?[0-9]{10,15}$";
+
+    private final PersonaRepository personaRepository;
+    private final RegistroRepository registroRepository;
+    private final PromocionRepository promocionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IndiceDniService indiceDniService;
+    private final FamiliaService familiaService;
+    private final int tamanioLote;
+
+    public ImportacionPersonaService(PersonaRepository personaRepository,
+                                     RegistroRepository registroRepository,
+                                     PromocionRepository promocionRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     IndiceDniService indiceDniService,
+                                     FamiliaService familiaService,
+                                     @Value("${app.personas.importacion.loteSize:500}") int tamanioLote) {
+        this.personaRepository = personaRepository;
+        this.registroRepository = registroRepository;
+        this.promocionRepository = promocionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.indiceDniService = indiceDniService;
+        this.familiaService = familiaService;
+        this.tamanioLote = tamanioLote;
+    }
+
+    public enum EstadoFila {
+        IMPORTADA, FORMATO_INVALIDO, DUPLICADA_EN_ARCHIVO, REGISTRO_DUPLICADO, PERSONA_EXISTENTE, SOCIO_RESPONSABLE_NO_ENCONTRADO, ERROR
+    }
+
+    public record ResultadoFila(int linea, String dni, EstadoFila estado, Long personaId, Registro registro, String detalle) {}
+
+    private record Alta(Persona persona, Fila fila) {}
+
+    private record ResultadoLote(List<ResultadoFila> resultados, List<Fila> pendientes) {}
+
+    private record Fila(int linea, String dni, String nombre, String apellido, CategoriaPersona categoria, LocalDate fechaNacimiento,
+                        String email, String telefono, String direccion, String socioResponsableDni, Long promocionId) {}
+
+    public void importar(InputStream archivo, boolean usarRegistroExistente, Consumer<ResultadoFila> resultado) throws IOException {
+        // DNI ya vistos en el archivo: una persona repetida en la planilla se informa en vez de pisarse
+        Set<String> dnisLeidos = new HashSet<>();
+        List<Fila> pendientes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(archivo, StandardCharsets.UTF_8))) {
+            List<Fila> lote = new ArrayList<>(tamanioLote);
+            String linea;
+            int numero = 0;
+            while ((linea = reader.readLine()) != null) {
+                numero++;
+                if (linea.isBlank()) continue;
+                Fila fila = parsear(numero, linea, resultado);
+                if (fila == null) continue;
+                if (!dnisLeidos.add(fila.dni())) {
+                    resultado.accept(new ResultadoFila(numero, fila.dni(), EstadoFila.DUPLICADA_EN_ARCHIVO, null, null, "El DNI aparece en una línea anterior"));
+                    continue;
+                }
+                lote.add(fila);
+                if (lote.size() == tamanioLote) {
+                    pendientes.addAll(procesarLote(lote, usarRegistroExistente, resultado));
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) pendientes.addAll(procesarLote(lote, usarRegistroExistente, resultado));
+        }
+        reintentarPendientes(pendientes, usarRegistroExistente, resultado);
+    }
+
+    // Cada pasada puede dar de alta socios de los que dependen otras pendientes; se corta cuando una no avanza
+    private void reintentarPendientes(List<Fila> pendientes, boolean usarRegistroExistente, Consumer<ResultadoFila> resultado) {
+        while (!pendientes.isEmpty()) {
+            List<Fila> siguen = new ArrayList<>();
+            for (int desde = 0; desde < pendientes.size(); desde += tamanioLote) {
+                List<Fila> lote = pendientes.subList(desde, Math.min(desde + tamanioLote, pendientes.size()));
+                siguen.addAll(procesarLote(lote, usarRegistroExistente, resultado));
+            }
+            if (siguen.size() == pendientes.size()) {
+                siguen.forEach(f -> resultado.accept(new ResultadoFila(f.linea(), f.dni(), EstadoFila.SOCIO_RESPONSABLE_NO_ENCONTRADO, null, null, "No existe una persona con DNI " + f.socioResponsableDni())));
+                return;
+            }
+            pendientes = siguen;
+        }
+    }
+
+    // Devuelve null si la linea es el encabezado o no es valida (en ese caso ya se informo)
+    private Fila parsear(int numero, String linea, Consumer<ResultadoFila> resultado) {
+        String[] c = LectorCsv.campos(linea, LectorCsv.separador(linea));
+        String dni = c[0].replace(".", "");
+        if (numero == 1 && !dni.matches("[0-9]+")) {
+            return null;
+        }
+        String error = null;
+        if (c.length < 4) error = "Se esperaba al menos dni;nombre;apellido;categoria";
+        else if (!dni.matches("^[0-9]{7,8}$")) error = "El DNI debe tener entre 7 y 8 números, sin puntos ni espacios";
+        else if (c[1].isEmpty() || c[2].isEmpty()) error = "El nombre y el apellido son obligatorios";
+        else if (campo(c, 5) != null && !campo(c, 5).matches(PATRON_EMAIL)) error = "El formato del email no es válido";
+        else if (campo(c, 6) != null && !campo(c, 6).matches(PATRON_TELEFONO)) error = "El teléfono debe contener entre 10 y 15 números (puede incluir + al inicio)";
+        if (error != null) {
+            resultado.accept(new ResultadoFila(numero, dni, EstadoFila.FORMATO_INVALIDO, null, null, error));
+            return null;
+        }
+        try {
+            CategoriaPersona categoria = CategoriaPersona.valueOf(c[3].toUpperCase());
+            String textoFecha = campo(c, 4);
+            LocalDate fechaNacimiento = textoFecha == null ? null
+                    : textoFecha.contains("/") ? LocalDate.parse(textoFecha, FECHA_LATAM) : LocalDate.parse(textoFecha);
+            String socioDni = campo(c, 8) != null ? campo(c, 8).replace(".", "") : null;
+            Long promocionId = campo(c, 9) != null ? Long.valueOf(campo(c, 9)) : null;
+            return new Fila(numero, dni, c[1], c[2], categoria, fechaNacimiento, campo(c, 5), campo(c, 6), campo(c, 7), socioDni, promocionId);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            resultado.accept(new ResultadoFila(numero, dni, EstadoFila.FORMATO_INVALIDO, null, null, e.getMessage()));
+            return null;
+        }
+    }
+
+    private static String campo(String[] campos, int indice) {
+        return indice < campos.length && !campos[indice].isEmpty() ? campos[indice] : null;
+    }
+
+    // Informa las filas resueltas y devuelve las que esperan a su socio responsable
+    private List<Fila> procesarLote(List<Fila> lote, boolean usarRegistroExistente, Consumer<ResultadoFila> resultado) {
+        ResultadoLote resultadoLote;
+        try {
+            resultadoLote = transactionTemplate.execute(status -> importarLote(lote, usarRegistroExistente));
+        } catch (RuntimeException e) {
+            resultadoLote = new ResultadoLote(lote.stream()
+                    .map(f -> new ResultadoFila(f.linea(), f.dni(), EstadoFila.ERROR, null, null, e.getMessage()))
+                    .toList(), List.of());
+        }
+        resultadoLote.resultados().forEach(resultado);
+        return resultadoLote.pendientes();
+    }
+
+    private ResultadoLote importarLote(List<Fila> lote, boolean usarRegistroExistente) {
+        Set<String> dnis = new HashSet<>();
+        Set<Long> promocionIds = new HashSet<>();
+        for (Fila fila : lote) {
+            dnis.add(fila.dni());
+            if (fila.socioResponsableDni() != null) dnis.add(fila.socioResponsableDni());
+            if (fila.promocionId() != null) promocionIds.add(fila.promocionId());
+        }
+        Map<String, Registro> registros = registroRepository.findByDniIn(dnis).stream()
+                .collect(Collectors.toMap(Registro::getDni, r -> r));
+        Map<String, Long> personaIds = personaRepository.findIdsByDnis(dnis);
+        // Como en el alta individual, una promocion inexistente se ignora
+        Set<Long> promocionesExistentes = promocionRepository.findAllById(promocionIds).stream()
+                .map(Promocion::getId)
+                .collect(Collectors.toSet());
+        Set<String> dnisDelLote = lote.stream().map(Fila::dni).collect(Collectors.toSet());
+
+        Map<Integer, ResultadoFila> resultados = new HashMap<>();
+        List<Alta> altas = new ArrayList<>();
+        List<Alta> aCargoDeOtraFila = new ArrayList<>();
+        List<Fila> pendientes = new ArrayList<>();
+        Map<String, Registro> registrosNuevos = new HashMap<>();
+        ZonedDateTime fechaRegistro = ZonedDateTime.now();
+
+        for (Fila fila : lote) {
+            if (personaIds.containsKey(fila.dni())) {
+                resultados.put(fila.linea(), new ResultadoFila(fila.linea(), fila.dni(), EstadoFila.PERSONA_EXISTENTE, personaIds.get(fila.dni()), null, "Ya existe una persona con ese DNI"));
+                continue;
+            }
+            Registro registro = registros.get(fila.dni());
+            if (registro != null && !usarRegistroExistente) {
+                RegistroDuplicadoException duplicado = new RegistroDuplicadoException(registro);
+                resultados.put(fila.linea(), new ResultadoFila(fila.linea(), fila.dni(), EstadoFila.REGISTRO_DUPLICADO, null, registro, duplicado.getMessage()));
+                continue;
+            }
+
+            Persona persona = new Persona();
+            persona.setNombre(registro != null ? registro.getNombre() : fila.nombre());
+            persona.setApellido(registro != null ? registro.getApellido() : fila.apellido());
+            persona.setDni(fila.dni());
+            persona.setFechaNacimiento(fila.fechaNacimiento());
+            persona.setEmail(fila.email());
+            persona.setTelefono(fila.telefono());
+            persona.setDireccion(fila.direccion());
+            persona.setCategoria(fila.categoria());
+            persona.setFechaRegistro(fechaRegistro);
+            persona.setActivo(true);
+            if (fila.promocionId() != null && promocionesExistentes.contains(fila.promocionId())) {
+                Promocion promocion = new Promocion();
+                promocion.setId(fila.promocionId());
+                persona.setPromocion(promocion);
+            }
+            if (registro == null) {
+                Registro nuevo = new Registro();
+                nuevo.setNombre(persona.getNombre());
+                nuevo.setApellido(persona.getApellido());
+                nuevo.setDni(persona.getDni());
+                nuevo.setFechaRegistro(fechaRegistro);
+                registrosNuevos.put(nuevo.getDni(), nuevo);
+            }
+
+            String socioDni = fila.socioResponsableDni();
+            if (socioDni == null) {
+                altas.add(new Alta(persona, fila));
+            } else if (personaIds.containsKey(socioDni)) {
+                persona.setSocioResponsable(referencia(personaIds.get(socioDni)));
+                altas.add(new Alta(persona, fila));
+            } else if (dnisDelLote.contains(socioDni)) {
+                // El socio responsable viene en este mismo lote: se inserta despues de los demas
+                aCargoDeOtraFila.add(new Alta(persona, fila));
+            } else {
+                // Puede venir en un lote posterior: se reintenta al final del archivo
+                pendientes.add(fila);
+            }
+        }
+
+        Set<String> insertadas = new HashSet<>();
+        personaRepository.insertPersonasIfAbsent(altas.stream().map(Alta::persona).toList())
+                .forEach(p -> insertadas.add(p.getDni()));
+
+        // El socio de un dependiente puede ser otro dependiente del lote: se inserta por niveles mientras alguno avance
+        List<Alta> enEspera = aCargoDeOtraFila;
+        while (!enEspera.isEmpty()) {
+            Set<String> socioDnis = enEspera.stream().map(a -> a.fila().socioResponsableDni()).collect(Collectors.toSet());
+            Map<String, Long> socioIds = personaRepository.findIdsByDnis(socioDnis);
+            List<Alta> conSocio = new ArrayList<>();
+            List<Alta> sinSocio = new ArrayList<>();
+            for (Alta alta : enEspera) {
+                Long socioId = socioIds.get(alta.fila().socioResponsableDni());
+                if (socioId != null) {
+                    alta.persona().setSocioResponsable(referencia(socioId));
+                    conSocio.add(alta);
+                } else {
+                    sinSocio.add(alta);
+                }
+            }
+            if (conSocio.isEmpty()) break;
+            altas.addAll(conSocio);
+            personaRepository.insertPersonasIfAbsent(conSocio.stream().map(Alta::persona).toList())
+                    .forEach(p -> insertadas.add(p.getDni()));
+            enEspera = sinSocio;
+        }
+        for (Alta alta : enEspera) {
+            Fila fila = alta.fila();
+            resultados.put(fila.linea(), new ResultadoFila(fila.linea(), fila.dni(), EstadoFila.SOCIO_RESPONSABLE_NO_ENCONTRADO, null, null, "El socio responsable " + fila.socioResponsableDni() + " no pudo importarse"));
+        }
+
+        // Solo se registran las personas que efectivamente se dieron de alta
+        registroRepository.insertRegistrosIfAbsent(registrosNuevos.values().stream()
+                .filter(r -> insertadas.contains(r.getDni()))
+                .toList());
+
+        Map<String, Long> nuevosIds = personaRepository.findIdsByDnis(insertadas);
+        indiceDniService.registrarAltas(nuevosIds);
+        familiaService.invalidar(altas.stream()
+                .map(a -> a.persona().getSocioResponsable())
+                .filter(socio -> socio != null)
+                .map(Persona::getId)
+                .collect(Collectors.toSet()));
+        for (Alta alta : altas) {
+            Fila fila = alta.fila();
+            if (insertadas.contains(fila.dni())) {
+                resultados.put(fila.linea(), new ResultadoFila(fila.linea(), fila.dni(), EstadoFila.IMPORTADA, nuevosIds.get(fila.dni()), null, null));
+            } else {
+                // Otra alta con el mismo DNI se confirmo mientras se procesaba el lote
+                resultados.put(fila.linea(), new ResultadoFila(fila.linea(), fila.dni(), EstadoFila.PERSONA_EXISTENTE, null, null, "Ya existe una persona con ese DNI"));
+            }
+        }
+        return new ResultadoLote(lote.stream()
+                .filter(f -> resultados.containsKey(f.linea()))
+                .map(f -> resultados.get(f.linea()))
+                .toList(), pendientes);
+    }
+
+    private static Persona referencia(Long personaId) {
+        Persona persona = new Persona();
+        persona.setId(personaId);
+        return persona;
+    }
+}
@@ -0,0 +1,243 @@
+package com.club_libertad.services;
+
+import com.club_libertad.models.Registro;
+import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.RegistroRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice en memoria de los DNI de registro y persona. Un filtro de Bloom descarta sin ir a la base los DNI
+ * que seguro no existen (la mayoria de las altas) y una cache LRU acotada guarda DNI -> ids de los que si.
+ * Las altas se agregan al filtro en el momento y a la cache despues del commit; las bajas solo limpian la
+ * cache, porque el filtro admite falsos positivos. El filtro es por instancia y no ve las altas de otras
+ * instancias hasta la proxima reconstruccion (app.dni.reconstruirCron), por eso solo se consulta en
+ * {@link #buscarRegistroParaAlta}, donde un falso "no existe" lo corrige la restriccion unica al insertar.
+ * La cache tampoco ve las bajas de otras instancias: cada entrada vence a los app.dni.ttlSegundos, y
+ * {@link #buscarPersonaId} confirma el id en la base antes de devolverlo, porque se usa como clave foranea.
+ * El ahorro de consultas esta en las altas (DNI nuevos descartados por el filtro); los registros se leen
+ * siempre de la base.
+ */
+@Service
+public class IndiceDniService {
+    private static final Logger log = LoggerFactory.getLogger(IndiceDniService.class);
+
+    private final PersonaRepository personaRepository;
+    private final RegistroRepository registroRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final double probabilidadFalsoPositivo;
+    private final long ttlMillis;
+    private final Map<String, EntradaDni> cache;
+
+    private volatile FiltroBloom filtro;
+    private volatile boolean reconstruyendo;
+    // Altas cuya transaccion no termino (false) o termino durante una reconstruccion (true). Se agregan al
+    // filtro nuevo despues de reemplazarlo, porque la consulta de la reconstruccion puede no haberlas visto
+    private final Map<String, Boolean> altasPendientes = new ConcurrentHashMap<>();
+
+    public IndiceDniService(PersonaRepository personaRepository,
+                            RegistroRepository registroRepository,
+                            JdbcTemplate jdbcTemplate,
+                            @Value("${app.dni.capacidadCache:10000}") int capacidadCache,
+                            @Value("${app.dni.probabilidadFalsoPositivo:0.01}") double probabilidadFalsoPositivo,
+                            @Value("${app.dni.ttlSegundos:300}") long ttlSegundos) {
+        this.personaRepository = personaRepository;
+        this.registroRepository = registroRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.probabilidadFalsoPositivo = probabilidadFalsoPositivo;
+        this.ttlMillis = ttlSegundos * 1000;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EntradaDni> eldest) {
+                return size() > capacidadCache;
+            }
+        };
+    }
+
+    private record EntradaDni(Long personaId, Long registroId, long guardadaEn) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconstruir();
+    }
+
+    // Excepcion a la regla de LeaseService: el filtro es memoria de cada instancia, asi que todas deben reconstruirlo
+    @Scheduled(cron = "${app.dni.reconstruirCron:0 0 * * * *}")
+    public void reconstruirProgramado() {
+        reconstruir();
+    }
+
+    // Arma un filtro nuevo con todos los DNI, dimensionado con margen para las altas de la temporada
+    public synchronized void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        reconstruyendo = true;
+        try {
+            Long cantidad = jdbcTemplate.queryForObject(
+                    "SELECT (SELECT COUNT(*) FROM registro) + (SELECT COUNT(*) FROM persona)", Long.class);
+            FiltroBloom nuevo = new FiltroBloom(Math.max(10_000, (cantidad != null ? cantidad : 0) * 2), probabilidadFalsoPositivo);
+            jdbcTemplate.query("SELECT dni FROM registro UNION SELECT dni FROM persona",
+                    rs -> {
+                        nuevo.agregar(rs.getString(1));
+                    });
+            filtro = nuevo;
+            // Las altas registradas antes del reemplazo estan en altasPendientes; las posteriores ya van al filtro nuevo
+            altasPendientes.keySet().forEach(nuevo::agregar);
+        } finally {
+            reconstruyendo = false;
+        }
+        altasPendientes.values().removeIf(Boolean::booleanValue);
+        log.info("Indice de DNI reconstruido en {} ms", System.currentTimeMillis() - inicio);
+    }
+
+    // false si el DNI no estaba en registro ni en persona al reconstruir el filtro ni se dio de alta en esta instancia
+    private boolean puedeExistir(String dni) {
+        FiltroBloom actual = filtro;
+        return actual == null || actual.puedeContener(dni);
+    }
+
+    /**
+     * Chequeo previo al alta: evita la consulta cuando el filtro descarta el DNI. Si el DNI se registro en otra
+     * instancia el filtro puede no saberlo; en ese caso el insert del registro choca con la restriccion unica.
+     */
+    public Optional<Registro> buscarRegistroParaAlta(String dni) {
+        if (!puedeExistir(dni)) {
+            return Optional.empty();
+        }
+        return buscarRegistro(dni);
+    }
+
+    private Optional<Registro> buscarRegistro(String dni) {
+        EntradaDni entrada = leerCache(dni);
+        Optional<Registro> registro = entrada != null && entrada.registroId() != null
+                ? registroRepository.findById(entrada.registroId())
+                : registroRepository.findByDni(dni);
+        registro.ifPresent(r -> guardarCache(dni, entrada != null ? entrada.personaId() : null, r.getId()));
+        return registro;
+    }
+
+    // El id se usa como socio responsable (clave foranea): uno en cache se confirma con una consulta por clave primaria
+    public Optional<Long> buscarPersonaId(String dni) {
+        EntradaDni entrada = leerCache(dni);
+        if (entrada != null && entrada.personaId() != null) {
+            if (personaRepository.existsById(entrada.personaId())) {
+                return Optional.of(entrada.personaId());
+            }
+            olvidarPersonaId(dni);
+        }
+        Optional<Long> personaId = personaRepository.findIdByDni(dni);
+        personaId.ifPresent(id -> guardarCache(dni, id, entrada != null ? entrada.registroId() : null));
+        return personaId;
+    }
+
+    // Se llama dentro de la transaccion del alta
+    public void registrarAlta(String dni, Long personaId, Long registroId) {
+        agregarAlFiltro(dni);
+        alTerminar(() -> terminarAlta(dni));
+        alConfirmar(() -> guardarCache(dni, personaId, registroId));
+    }
+
+    public void registrarAltas(Map<String, Long> personaIdPorDni) {
+        personaIdPorDni.keySet().forEach(this::agregarAlFiltro);
+        alTerminar(() -> personaIdPorDni.keySet().forEach(this::terminarAlta));
+        alConfirmar(() -> personaIdPorDni.forEach((dni, id) -> guardarCache(dni, id, null)));
+    }
+
+    // Las personas dadas de baja conservan su registro: solo se descarta el id de persona
+    public void olvidarPersonas(Collection<Long> personaIds) {
+        Set<Long> ids = new HashSet<>(personaIds);
+        alConfirmar(() -> {
+            synchronized (cache) {
+                cache.replaceAll((dni, entrada) -> ids.contains(entrada.personaId())
+                        ? new EntradaDni(null, entrada.registroId(), entrada.guardadaEn()) : entrada);
+            }
+        });
+    }
+
+    // Se marca pendiente antes de leer el filtro: si se lee el anterior, la reconstruccion la agrega al nuevo
+    private void agregarAlFiltro(String dni) {
+        altasPendientes.put(dni, false);
+        FiltroBloom actual = filtro;
+        if (actual != null) actual.agregar(dni);
+    }
+
+    // Durante una reconstruccion el alta se conserva hasta que el filtro nuevo la incorpore
+    private void terminarAlta(String dni) {
+        if (reconstruyendo) {
+            altasPendientes.replace(dni, true);
+        } else {
+            altasPendientes.remove(dni);
+        }
+    }
+
+    // Una entrada vencida se descarta: pudo cambiar en otra instancia
+    private EntradaDni leerCache(String dni) {
+        synchronized (cache) {
+            EntradaDni entrada = cache.get(dni);
+            if (entrada != null && System.currentTimeMillis() - entrada.guardadaEn() > ttlMillis) {
+                cache.remove(dni);
+                return null;
+            }
+            return entrada;
+        }
+    }
+
+    private void olvidarPersonaId(String dni) {
+        synchronized (cache) {
+            cache.computeIfPresent(dni, (k, entrada) -> new EntradaDni(null, entrada.registroId(), entrada.guardadaEn()));
+        }
+    }
+
+    private void guardarCache(String dni, Long personaId, Long registroId) {
+        synchronized (cache) {
+            // leerCache descarta la entrada anterior si vencio, asi no se renuevan ids viejos
+            EntradaDni anterior = leerCache(dni);
+            cache.put(dni, new EntradaDni(
+                    personaId != null ? personaId : anterior != null ? anterior.personaId() : null,
+                    registroId != null ? registroId : anterior != null ? anterior.registroId() : null,
+                    System.currentTimeMillis()));
+        }
+    }
+
+    // Al confirmar o revertir la transaccion actual
+    private void alTerminar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.club_libertad.services;
+
+import com.club_libertad.repositories.LeaseTareaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exclusion mutua entre instancias para las tareas programadas, usando la tabla lease_tarea de PostgreSQL.
+ * Todo metodo {@code @Scheduled} de este paquete que trabaja sobre la base debe ejecutar su trabajo a traves de
+ * {@link #ejecutarConLease}, asi solo una instancia lo corre aunque el cron dispare en todas. La excepcion son
+ * las tareas que refrescan estado en memoria de cada instancia (IndiceDniService.reconstruirProgramado). Mientras la tarea corre, un hilo virtual
+ * renueva el lease (heartbeat); si la instancia muere, el lease vence y otra puede tomarlo.
+ */
+@Service
+public class LeaseService {
+    private static final Logger log = LoggerFactory.getLogger(LeaseService.class);
+
+    private final LeaseTareaRepository leaseTareaRepository;
+    private final String propietario;
+    private final long duracionSegundos;
+    private final long minimoSegundos;
+
+    public LeaseService(LeaseTareaRepository leaseTareaRepository,
+                        @Value("${app.lease.duracionSegundos:600}") long duracionSegundos,
+                        @Value("${app.lease.minimoSegundos:300}") long minimoSegundos) {
+        this.leaseTareaRepository = leaseTareaRepository;
+        this.duracionSegundos = duracionSegundos;
+        this.minimoSegundos = minimoSegundos;
+        String host = System.getenv().getOrDefault("HOSTNAME", "instancia");
+        this.propietario = host + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Ejecuta la tarea solo si esta instancia obtiene el lease {@code nombre}.
+     * Devuelve false si otra instancia lo tiene.
+     */
+    public boolean ejecutarConLease(String nombre, Runnable tarea) {
+        if (leaseTareaRepository.adquirir(nombre, propietario, duracionSegundos) == 0) {
+            log.info("Tarea {} omitida: el lease lo tiene otra instancia", nombre);
+            return false;
+        }
+        CountDownLatch fin = new CountDownLatch(1);
+        Thread heartbeat = Thread.ofVirtual().name("lease-" + nombre).start(() -> renovarHastaTerminar(nombre, fin));
+        try {
+            tarea.run();
+        } finally {
+            fin.countDown();
+            try {
+                heartbeat.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            leaseTareaRepository.liberar(nombre, propietario, minimoSegundos);
+        }
+        return true;
+    }
+
+    private void renovarHastaTerminar(String nombre, CountDownLatch fin) {
+        long intervaloMs = Math.max(1, duracionSegundos / 3) * 1000;
+        try {
+            while (!fin.await(intervaloMs, TimeUnit.MILLISECONDS)) {
+                if (leaseTareaRepository.renovar(nombre, propietario, duracionSegundos) == 0) {
+                    log.warn("Se perdio el lease de la tarea {}", nombre);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Error al renovar el lease de la tarea {}: {}", nombre, e.getMessage());
+        }
+    }
+}
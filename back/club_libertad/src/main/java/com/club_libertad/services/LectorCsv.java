@@ -0,0 +1,44 @@
+package com.club_libertad.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lectura de lineas de planillas exportadas a CSV: separador ';' (Excel en español) o ',', con campos entre comillas
+final class LectorCsv {
+    private LectorCsv() {}
+
+    // Solo cuenta un ';' fuera de comillas: una direccion "Calle 1; depto 2" no cambia el separador de la linea
+    static char separador(String linea) {
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '"') entreComillas = !entreComillas;
+            else if (c == ';' && !entreComillas) return ';';
+        }
+        return ',';
+    }
+
+    static String[] campos(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '"') {
+                if (entreComillas && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    entreComillas = !entreComillas;
+                }
+            } else if (c == separador && !entreComillas) {
+                campos.add(actual.toString().trim());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString().trim());
+        return campos.toArray(String[]::new);
+    }
+}
@@ -1,37 +1,299 @@
 package com.club_libertad.services;
 
+import com.club_libertad.dtos.OperacionPagoDTO;
 import com.club_libertad.dtos.PagoDTO;
 import com.club_libertad.enums.EstadoCuota;
+import com.club_libertad.enums.MetodoPago;
+import com.club_libertad.enums.ResultadoOperacionPago;
+import com.club_libertad.exceptions.CuotaYaPagadaException;
+import com.club_libertad.exceptions.PagoInvalidoException;
 import com.club_libertad.models.Cuota;
+import com.club_libertad.models.OperacionPago;
 import com.club_libertad.models.Pago;
 import com.club_libertad.models.Persona;
 import com.club_libertad.repositories.CuotaRepository;
+import com.club_libertad.repositories.OperacionPagoRepository;
 import com.club_libertad.repositories.PagoRepository;
+import com.club_libertad.repositories.PersonaRepository;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class PagoService {
     private final PagoRepository pagoRepository;
     private final CuotaRepository cuotaRepository;
+    private final PersonaRepository personaRepository;
+    private final SaldoService saldoService;
+    private final OperacionPagoRepository operacionPagoRepository;
+    private final CajaService cajaService;
+    private final int maximoOperacionesPorLote;
     
-    public PagoService(PagoRepository pagoRepository, CuotaRepository cuotaRepository) {
+    public PagoService(PagoRepository pagoRepository, CuotaRepository cuotaRepository, PersonaRepository personaRepository, SaldoService saldoService,
+                       OperacionPagoRepository operacionPagoRepository,
+                       CajaService cajaService,
+                       @Value("${app.pagos.sincronizacion.maxOperaciones:500}") int maximoOperacionesPorLote) {
         this.pagoRepository = pagoRepository;
         this.cuotaRepository = cuotaRepository;
+        this.personaRepository = personaRepository;
+        this.saldoService = saldoService;
+        this.operacionPagoRepository = operacionPagoRepository;
+        this.cajaService = cajaService;
+        this.maximoOperacionesPorLote = maximoOperacionesPorLote;
     }
 
     @Transactional(readOnly = true)
     public List<Pago> getAllPagos(){ return pagoRepository.findAll(); }
 
+    public record VentanaPagos(List<Pago> pagos, LocalDate siguienteFecha, Long siguienteId, boolean hayMas) {}
+
+    /**
+     * Pagos del mas reciente al mas antiguo, paginados por clave (fechaPago, id): la siguiente pagina se pide
+     * con la fecha y el id del ultimo pago recibido, asi cada pagina es un recorrido acotado del indice
+     * sin importar cuanta historia haya. Solo se agregan al WHERE los filtros informados, para que el plan
+     * use el indice compuesto que corresponde (socio, metodo o solo fecha).
+     */
+    @Transactional(readOnly = true)
+    public VentanaPagos buscarPagos(Long socioId, MetodoPago metodoPago, LocalDate desde, LocalDate hasta,
+                                    LocalDate despuesDeFecha, Long despuesDeId, int tamanio){
+        Specification<Pago> filtro = (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>();
+            if(socioId != null) predicados.add(cb.equal(root.get("socioId").get("id"), socioId));
+            if(metodoPago != null) predicados.add(cb.equal(root.get("metodoPago"), metodoPago));
+            if(desde != null) predicados.add(cb.greaterThanOrEqualTo(root.get("fechaPago"), desde));
+            if(hasta != null) predicados.add(cb.lessThanOrEqualTo(root.get("fechaPago"), hasta));
+            if(despuesDeFecha != null && despuesDeId != null) {
+                predicados.add(cb.or(
+                        cb.lessThan(root.get("fechaPago"), despuesDeFecha),
+                        cb.and(cb.equal(root.get("fechaPago"), despuesDeFecha), cb.lessThan(root.get("id"), despuesDeId))));
+            }
+            return cb.and(predicados.toArray(Predicate[]::new));
+        };
+        Sort orden = Sort.by(Sort.Order.desc("fechaPago"), Sort.Order.desc("id"));
+        // Se pide uno de mas para saber si hay otra pagina sin hacer un COUNT
+        List<Pago> pagos = pagoRepository.findBy(filtro, q -> q.sortBy(orden).limit(tamanio + 1).all());
+        boolean hayMas = pagos.size() > tamanio;
+        if(hayMas) pagos = pagos.subList(0, tamanio);
+        Pago ultimo = hayMas ? pagos.get(pagos.size() - 1) : null;
+        return new VentanaPagos(pagos, ultimo != null ? ultimo.getFechaPago() : null, ultimo != null ? ultimo.getId() : null, hayMas);
+    }
+
     @Transactional(readOnly = true)
     public Optional<Pago> getPagoById(Long id){ return pagoRepository.findById(id); }
 
+    /**
+     * Registra el pago y marca sus cuotas como PAGADAS. Las cuotas se cargan y bloquean en una sola
+     * consulta; se rechaza el pago si alguna no existe, ya esta pagada o no pertenece al socio (ni a
+     * una persona a su cargo). La asociacion con el pago se escribe en un unico UPDATE.
+     */
     @Transactional
     public Optional<Long> savePago(PagoDTO pagoTransfer){
+        Set<Long> cuotaIds = pagoTransfer.getCuotaIds() != null ? new LinkedHashSet<>(pagoTransfer.getCuotaIds()) : Set.of();
+        List<Cuota> cuotas = cuotaIds.isEmpty() ? List.of() : cuotaRepository.findAllByIdForUpdate(cuotaIds);
+        validarCuotas(pagoTransfer.getSocioId(), cuotaIds, cuotas);
+
+        Pago pagoCreated = registrarPago(pagoTransfer, cuotas);
+
+        // Associate cuotas with this pago
+        if(!cuotaIds.isEmpty()) {
+            cuotaRepository.asociarPago(cuotaIds, pagoCreated, EstadoCuota.PAGADA);
+        }
+        saldoService.recalcular(personasAfectadas(pagoTransfer.getSocioId(), cuotas));
+        cajaService.registrarPagos(List.of(pagoCreated));
+
+        return Optional.of(pagoCreated.getId());
+    }
+
+    public record ResultadoPagoLote(Long pagoId, List<Long> cuotasEnConflicto, String error) {}
+
+    /**
+     * Registra varios pagos con las mismas reglas que {@link #savePago}, pero con un costo fijo por lote:
+     * las cuotas de todos los pagos se bloquean y validan en una consulta, los pagos se insertan en un lote
+     * JDBC y la asociacion de cuotas, el saldo y la caja se actualizan una vez para todo el lote. Un pago
+     * invalido no impide los demas: el resultado de cada pago viene en la misma posicion de la lista.
+     */
+    @Transactional
+    public List<ResultadoPagoLote> savePagosEnLote(List<PagoDTO> pagos){
+        Set<Long> todasLasCuotas = new HashSet<>();
+        pagos.forEach(p -> { if(p.getCuotaIds() != null) todasLasCuotas.addAll(p.getCuotaIds()); });
+        Map<Long, Cuota> cuotasBloqueadas = new HashMap<>();
+        if(!todasLasCuotas.isEmpty()) {
+            cuotaRepository.findAllByIdForUpdate(todasLasCuotas).forEach(c -> cuotasBloqueadas.put(c.getId(), c));
+        }
+        // Personas a cargo de cada socio del lote, para validar sin una consulta por pago
+        Set<Long> socios = new HashSet<>();
+        pagos.forEach(p -> { if(p.getSocioId() != null) socios.add(p.getSocioId()); });
+        Map<Long, Set<Long>> permitidasPorSocio = personaRepository.findIdsSocioYDependientes(socios);
+
+        List<ResultadoPagoLote> resultados = new ArrayList<>(pagos.size());
+        List<Pago> aInsertar = new ArrayList<>();
+        List<List<Cuota>> cuotasPorPago = new ArrayList<>();
+        Set<Long> asignadasEnLote = new HashSet<>();
+        Set<Long> personas = new HashSet<>();
+        for(PagoDTO pagoTransfer : pagos) {
+            Set<Long> cuotaIds = pagoTransfer.getCuotaIds() != null ? new LinkedHashSet<>(pagoTransfer.getCuotaIds()) : Set.of();
+            List<Cuota> cuotas = cuotaIds.stream().map(cuotasBloqueadas::get).filter(Objects::nonNull).toList();
+            Set<Long> permitidas = permitidasPorSocio.getOrDefault(pagoTransfer.getSocioId(), Set.of());
+            try {
+                if(!permitidasPorSocio.containsKey(pagoTransfer.getSocioId())) {
+                    throw new PagoInvalidoException("No existe el socio " + pagoTransfer.getSocioId());
+                }
+                List<Long> tomadas = cuotaIds.stream().filter(asignadasEnLote::contains).toList();
+                if(!tomadas.isEmpty()) throw new CuotaYaPagadaException(tomadas);
+                validarCuotas(pagoTransfer.getSocioId(), cuotaIds, cuotas, permitidas);
+            } catch (CuotaYaPagadaException e) {
+                resultados.add(new ResultadoPagoLote(null, e.getCuotaIds(), e.getMessage()));
+                continue;
+            } catch (PagoInvalidoException e) {
+                resultados.add(new ResultadoPagoLote(null, List.of(), e.getMessage()));
+                continue;
+            }
+            asignadasEnLote.addAll(cuotaIds);
+            personas.addAll(personasAfectadas(pagoTransfer.getSocioId(), cuotas));
+            aInsertar.add(armarPago(pagoTransfer, cuotas));
+            cuotasPorPago.add(cuotas);
+            // El id se completa despues del insert
+            resultados.add(null);
+        }
+
+        pagoRepository.insertPagos(aInsertar);
+        Map<Long, Long> pagoIdPorCuota = new HashMap<>();
+        for(int i = 0; i < aInsertar.size(); i++) {
+            Long pagoId = aInsertar.get(i).getId();
+            cuotasPorPago.get(i).forEach(c -> pagoIdPorCuota.put(c.getId(), pagoId));
+        }
+        cuotaRepository.asociarPagos(pagoIdPorCuota, EstadoCuota.PAGADA);
+        if(!personas.isEmpty()) saldoService.recalcular(personas);
+        cajaService.registrarPagos(aInsertar);
+
+        int siguiente = 0;
+        for(int i = 0; i < resultados.size(); i++) {
+            if(resultados.get(i) == null) {
+                resultados.set(i, new ResultadoPagoLote(aInsertar.get(siguiente++).getId(), List.of(), null));
+            }
+        }
+        return resultados;
+    }
+
+    public record ResultadoSincronizacion(String claveIdempotencia, ResultadoOperacionPago resultado, Long pagoId,
+                                          List<Long> cuotasEnConflicto, String detalle, boolean repetida) {}
+
+    /**
+     * Aplica en orden, y en una sola transaccion, los pagos que una caja registro sin conexion. Todas las
+     * cuotas del lote se bloquean en una consulta (ordenadas por id, sin riesgo de deadlock con otra caja).
+     * Cada operacion se valida como en {@link #savePago}: si alguna cuota ya fue pagada (en otra caja o por
+     * una operacion anterior del mismo lote) queda en CONFLICTO y las demas se aplican igual. El resultado
+     * se guarda por clave de idempotencia, de modo que reenviar el lote devuelve lo mismo sin duplicar pagos;
+     * las claves se bloquean antes de leerlas, asi un reenvio concurrente espera y devuelve lo registrado.
+     */
+    @Transactional
+    public List<ResultadoSincronizacion> sincronizarPagos(List<OperacionPagoDTO> operaciones){
+        if(operaciones.size() > maximoOperacionesPorLote) {
+            throw new PagoInvalidoException("El lote supera el maximo de " + maximoOperacionesPorLote + " operaciones");
+        }
+        Set<String> claves = new HashSet<>();
+        Set<Long> todasLasCuotas = new HashSet<>();
+        Set<Long> socios = new HashSet<>();
+        for(OperacionPagoDTO operacion : operaciones) {
+            if(operacion.getClaveIdempotencia() != null) claves.add(operacion.getClaveIdempotencia());
+            if(operacion.getCuotaIds() != null) todasLasCuotas.addAll(operacion.getCuotaIds());
+            if(operacion.getSocioId() != null) socios.add(operacion.getSocioId());
+        }
+        // Lectura posterior al lock: en READ COMMITTED ve las operaciones de la transaccion que lo tenia
+        operacionPagoRepository.bloquearClaves(claves);
+        Map<String, OperacionPago> registradas = new HashMap<>();
+        operacionPagoRepository.findAllById(claves).forEach(o -> registradas.put(o.getClaveIdempotencia(), o));
+        Map<Long, Cuota> cuotasBloqueadas = new HashMap<>();
+        if(!todasLasCuotas.isEmpty()) {
+            cuotaRepository.findAllByIdForUpdate(todasLasCuotas).forEach(c -> cuotasBloqueadas.put(c.getId(), c));
+        }
+        // Un socio ausente del mapa no existe: su operacion queda INVALIDA en vez de fallar el lote por la fk
+        Map<Long, Set<Long>> permitidasPorSocio = personaRepository.findIdsSocioYDependientes(socios);
+
+        List<ResultadoSincronizacion> resultados = new ArrayList<>(operaciones.size());
+        List<OperacionPago> nuevas = new ArrayList<>();
+        List<Pago> pagosCreados = new ArrayList<>();
+        Set<Long> personasAfectadas = new HashSet<>();
+        for(OperacionPagoDTO operacion : operaciones) {
+            String clave = operacion.getClaveIdempotencia();
+            if(clave == null || clave.isBlank() || clave.length() > 100) {
+                resultados.add(new ResultadoSincronizacion(clave, ResultadoOperacionPago.INVALIDA, null, List.of(),
+                        "La clave de idempotencia es obligatoria (hasta 100 caracteres)", false));
+                continue;
+            }
+            OperacionPago previa = registradas.get(clave);
+            if(previa != null) {
+                List<Long> conflictoPrevio = previa.getCuotasEnConflicto() != null ? previa.getCuotasEnConflicto() : List.of();
+                resultados.add(new ResultadoSincronizacion(clave, previa.getResultado(), previa.getPagoId(), conflictoPrevio, previa.getDetalle(), true));
+                continue;
+            }
+
+            Set<Long> cuotaIds = operacion.getCuotaIds() != null ? new LinkedHashSet<>(operacion.getCuotaIds()) : Set.of();
+            List<Cuota> cuotas = cuotaIds.stream().map(cuotasBloqueadas::get).filter(Objects::nonNull).toList();
+            OperacionPago registro = new OperacionPago();
+            registro.setClaveIdempotencia(clave);
+            registro.setFechaRegistro(LocalDateTime.now());
+            List<Long> enConflicto = List.of();
+            try {
+                if(operacion.getSocioId() == null || operacion.getFechaPago() == null) {
+                    throw new PagoInvalidoException("El socio y la fecha de pago son obligatorios");
+                }
+                if(!permitidasPorSocio.containsKey(operacion.getSocioId())) {
+                    throw new PagoInvalidoException("No existe el socio " + operacion.getSocioId());
+                }
+                validarCuotas(operacion.getSocioId(), cuotaIds, cuotas, permitidasPorSocio.get(operacion.getSocioId()));
+                Pago pago = registrarPago(operacion, cuotas);
+                // Las cuotas estan administradas: las siguientes operaciones del lote ya las ven pagadas
+                for(Cuota cuota : cuotas) {
+                    cuota.setPagoId(pago);
+                    cuota.setEstado(EstadoCuota.PAGADA);
+                }
+                personasAfectadas.addAll(personasAfectadas(operacion.getSocioId(), cuotas));
+                pagosCreados.add(pago);
+                registro.setPagoId(pago.getId());
+                registro.setResultado(ResultadoOperacionPago.APLICADA);
+            } catch (CuotaYaPagadaException e) {
+                enConflicto = e.getCuotaIds();
+                registro.setCuotasEnConflicto(enConflicto);
+                registro.setResultado(ResultadoOperacionPago.CONFLICTO);
+                registro.setDetalle(e.getMessage());
+            } catch (PagoInvalidoException e) {
+                registro.setResultado(ResultadoOperacionPago.INVALIDA);
+                registro.setDetalle(e.getMessage());
+            }
+            nuevas.add(registro);
+            registradas.put(clave, registro);
+            resultados.add(new ResultadoSincronizacion(clave, registro.getResultado(), registro.getPagoId(), enConflicto, registro.getDetalle(), false));
+        }
+
+        operacionPagoRepository.saveAll(nuevas);
+        if(!personasAfectadas.isEmpty()) saldoService.recalcular(personasAfectadas);
+        cajaService.registrarPagos(pagosCreados);
+        return resultados;
+    }
+
+    private Pago registrarPago(PagoDTO pagoTransfer, List<Cuota> cuotas){
+        return pagoRepository.save(armarPago(pagoTransfer, cuotas));
+    }
+
+    // Arma el pago con los importes sumados de sus cuotas (componentes sin descuento y total con descuento)
+    private Pago armarPago(PagoDTO pagoTransfer, List<Cuota> cuotas){
         Pago pagoCreate = new Pago();
         Persona socioExisting = new Persona();
         socioExisting.setId(pagoTransfer.getSocioId());
@@ -39,47 +301,59 @@ public class PagoService {
         pagoCreate.setFechaPago(pagoTransfer.getFechaPago());
         if(pagoTransfer.getMetodoPago() != null) pagoCreate.setMetodoPago(pagoTransfer.getMetodoPago());
         if(pagoTransfer.getObservaciones() != null) pagoCreate.setObservaciones(pagoTransfer.getObservaciones());
-        
-        // Calculate fee components from cuotas (without discount) and total with discounts
+
         BigDecimal totalEntrenador = BigDecimal.ZERO;
         BigDecimal totalSeguro = BigDecimal.ZERO;
         BigDecimal totalSocial = BigDecimal.ZERO;
         BigDecimal montoTotalConDescuento = BigDecimal.ZERO;
-        
-        if(pagoTransfer.getCuotaIds() != null && !pagoTransfer.getCuotaIds().isEmpty()) {
-            for(Long cuotaId : pagoTransfer.getCuotaIds()) {
-                Optional<Cuota> cuotaOpt = cuotaRepository.findById(cuotaId);
-                if(cuotaOpt.isPresent()) {
-                    Cuota cuota = cuotaOpt.get();
-                    totalEntrenador = totalEntrenador.add(cuota.getCuotaEntrenador() != null ? cuota.getCuotaEntrenador() : BigDecimal.ZERO);
-                    totalSeguro = totalSeguro.add(cuota.getCuotaSeguro() != null ? cuota.getCuotaSeguro() : BigDecimal.ZERO);
-                    totalSocial = totalSocial.add(cuota.getCuotaSocial() != null ? cuota.getCuotaSocial() : BigDecimal.ZERO);
-                    montoTotalConDescuento = montoTotalConDescuento.add(cuota.getMonto() != null ? cuota.getMonto() : BigDecimal.ZERO);
-                }
-            }
+        for(Cuota cuota : cuotas) {
+            totalEntrenador = totalEntrenador.add(cuota.getCuotaEntrenador() != null ? cuota.getCuotaEntrenador() : BigDecimal.ZERO);
+            totalSeguro = totalSeguro.add(cuota.getCuotaSeguro() != null ? cuota.getCuotaSeguro() : BigDecimal.ZERO);
+            totalSocial = totalSocial.add(cuota.getCuotaSocial() != null ? cuota.getCuotaSocial() : BigDecimal.ZERO);
+            montoTotalConDescuento = montoTotalConDescuento.add(cuota.getMonto() != null ? cuota.getMonto() : BigDecimal.ZERO);
         }
-        
         pagoCreate.setCuotaEntrenador(totalEntrenador);
         pagoCreate.setCuotaSeguro(totalSeguro);
         pagoCreate.setCuotaSocial(totalSocial);
         pagoCreate.setMontoTotal(montoTotalConDescuento);
-        
-        // Save pago first to get its ID
-        Pago pagoCreated = pagoRepository.save(pagoCreate);
-        
-        // Associate cuotas with this pago
-        if(pagoTransfer.getCuotaIds() != null && !pagoTransfer.getCuotaIds().isEmpty()) {
-            for(Long cuotaId : pagoTransfer.getCuotaIds()) {
-                Optional<Cuota> cuotaOpt = cuotaRepository.findById(cuotaId);
-                if(cuotaOpt.isPresent()) {
-                    Cuota cuota = cuotaOpt.get();
-                    cuota.setPagoId(pagoCreated);
-                    cuota.setEstado(EstadoCuota.PAGADA);
-                    cuotaRepository.save(cuota);
-                }
+        return pagoCreate;
+    }
+
+    private Set<Long> personasAfectadas(Long socioId, List<Cuota> cuotas){
+        Set<Long> personas = new HashSet<>();
+        personas.add(socioId);
+        cuotas.forEach(c -> personas.add(c.getPersonaIdValue()));
+        return personas;
+    }
+
+    private void validarCuotas(Long socioId, Set<Long> cuotaIds, List<Cuota> cuotas){
+        Set<Long> personasPermitidas = cuotas.isEmpty() ? Set.of()
+                : personaRepository.findIdsSocioYDependientes(List.of(socioId)).getOrDefault(socioId, Set.of());
+        validarCuotas(socioId, cuotaIds, cuotas, personasPermitidas);
+    }
+
+    // personasPermitidas: el socio y las personas a su cargo, directas e indirectas (como en el grupo familiar)
+    private void validarCuotas(Long socioId, Set<Long> cuotaIds, List<Cuota> cuotas, Set<Long> personasPermitidas){
+        if(cuotas.size() != cuotaIds.size()) {
+            List<Long> encontradas = cuotas.stream().map(Cuota::getId).toList();
+            List<Long> inexistentes = cuotaIds.stream().filter(id -> !encontradas.contains(id)).toList();
+            throw new PagoInvalidoException("Las cuotas " + inexistentes + " no existen");
+        }
+        List<Long> pagadas = cuotas.stream()
+                .filter(c -> c.getEstado() == EstadoCuota.PAGADA || c.getPagoIdValue() != null)
+                .map(Cuota::getId)
+                .toList();
+        if(!pagadas.isEmpty()) {
+            throw new CuotaYaPagadaException(pagadas);
+        }
+        if(!cuotas.isEmpty()) {
+            List<Long> ajenas = cuotas.stream()
+                    .filter(c -> !personasPermitidas.contains(c.getPersonaIdValue()))
+                    .map(Cuota::getId)
+                    .toList();
+            if(!ajenas.isEmpty()) {
+                throw new PagoInvalidoException("Las cuotas " + ajenas + " no pertenecen al socio " + socioId + " ni a personas a su cargo");
             }
         }
-        
-        return Optional.of(pagoCreated.getId());
     }
 }
@@ -0,0 +1,170 @@
+package com.club_libertad.services;
+
+import com.club_libertad.enums.TipoDescuento;
+import com.club_libertad.models.Cuota;
+import com.club_libertad.models.Inscripcion;
+import com.club_libertad.models.Pago;
+import com.club_libertad.models.Persona;
+import com.club_libertad.models.Promocion;
+import com.club_libertad.repositories.CuotaRepository;
+import com.club_libertad.repositories.InscripcionRepository;
+import com.club_libertad.repositories.PagoRepository;
+import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.PromocionRepository;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Ficha de una persona en una sola peticion: datos, inscripciones activas, ultimas cuotas, ultimos pagos
+ * y promocion. Cada seccion es una consulta independiente que corre en un hilo virtual con su propia
+ * transaccion de solo lectura; todas comparten un plazo de app.perfil.timeoutMs, que tambien se aplica
+ * como timeout de las sentencias. Si una seccion no llega a tiempo se devuelve la ficha sin ella y se
+ * informa en seccionesIncompletas; solo la persona es obligatoria.
+ */
+@Service
+public class PerfilService {
+    private static final Logger log = LoggerFactory.getLogger(PerfilService.class);
+
+    private final PersonaRepository personaRepository;
+    private final InscripcionRepository inscripcionRepository;
+    private final CuotaRepository cuotaRepository;
+    private final PagoRepository pagoRepository;
+    private final PromocionRepository promocionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long timeoutMs;
+    private final int cuotasRecientes;
+    private final int pagosRecientes;
+    private final Semaphore permisos;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PerfilService(PersonaRepository personaRepository,
+                         InscripcionRepository inscripcionRepository,
+                         CuotaRepository cuotaRepository,
+                         PagoRepository pagoRepository,
+                         PromocionRepository promocionRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.perfil.timeoutMs:1500}") long timeoutMs,
+                         @Value("${app.perfil.cuotasRecientes:12}") int cuotasRecientes,
+                         @Value("${app.perfil.pagosRecientes:12}") int pagosRecientes,
+                         @Value("${app.perfil.paralelismo:5}") int paralelismo,
+                         @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximoPool) {
+        this.personaRepository = personaRepository;
+        this.inscripcionRepository = inscripcionRepository;
+        this.cuotaRepository = cuotaRepository;
+        this.pagoRepository = pagoRepository;
+        this.promocionRepository = promocionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout((int) Math.max(1, (timeoutMs + 999) / 1000));
+        this.timeoutMs = timeoutMs;
+        this.cuotasRecientes = cuotasRecientes;
+        this.pagosRecientes = pagosRecientes;
+        // Las fichas de todas las peticiones comparten estos permisos y dejan al menos una conexion libre
+        this.permisos = new Semaphore(Math.max(1, Math.min(paralelismo, maximoPool - 1)));
+    }
+
+    public record InscripcionActiva(Long id, Long deporteId, String deporte, LocalDate fechaInscripcion) {}
+
+    public record ResumenPromocion(Long id, String nombre, String descripcion, TipoDescuento tipoDescuento, BigDecimal descuento, Boolean activo) {}
+
+    public record PerfilPersona(Persona persona, List<InscripcionActiva> inscripciones, List<Cuota> cuotas,
+                                List<Pago> pagos, ResumenPromocion promocion, List<String> seccionesIncompletas) {}
+
+    public Optional<PerfilPersona> getPerfil(Long personaId) {
+        long plazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        Future<Optional<Persona>> persona = consultar(() -> personaRepository.findConDeportesById(personaId));
+        Future<List<InscripcionActiva>> inscripciones = consultar(() -> inscripcionRepository.findActivasByPersonaIdConDeporte(personaId).stream()
+                .map(this::aInscripcionActiva)
+                .toList());
+        Future<List<Cuota>> cuotas = consultar(() -> cuotaRepository.findRecientesByPersonaId(personaId, PageRequest.of(0, cuotasRecientes)));
+        Future<List<Pago>> pagos = consultar(() -> {
+            List<Pago> recientes = pagoRepository.findRecientesBySocioId(personaId, PageRequest.of(0, pagosRecientes));
+            // cuotasIds se serializa fuera de la transaccion: se cargan aca, de a lotes por @BatchSize
+            recientes.forEach(p -> Hibernate.initialize(p.getCuotas()));
+            return recientes;
+        });
+        Future<Optional<ResumenPromocion>> promocion = consultar(() -> promocionRepository.findByPersonaId(personaId).map(this::aResumenPromocion));
+
+        List<String> incompletas = new ArrayList<>();
+        Optional<Persona> encontrada = esperar(persona, plazo, "persona", incompletas);
+        if (encontrada == null) {
+            List.of(inscripciones, cuotas, pagos, promocion).forEach(f -> f.cancel(true));
+            throw new IllegalStateException("No se pudo obtener la persona " + personaId + " a tiempo");
+        }
+        if (encontrada.isEmpty()) {
+            List.of(inscripciones, cuotas, pagos, promocion).forEach(f -> f.cancel(true));
+            return Optional.empty();
+        }
+
+        List<InscripcionActiva> inscripcionesActivas = esperar(inscripciones, plazo, "inscripciones", incompletas);
+        List<Cuota> ultimasCuotas = esperar(cuotas, plazo, "cuotas", incompletas);
+        List<Pago> ultimosPagos = esperar(pagos, plazo, "pagos", incompletas);
+        Optional<ResumenPromocion> promocionActual = esperar(promocion, plazo, "promocion", incompletas);
+
+        return Optional.of(new PerfilPersona(encontrada.get(), inscripcionesActivas, ultimasCuotas, ultimosPagos,
+                promocionActual != null ? promocionActual.orElse(null) : null, incompletas));
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdownNow();
+    }
+
+    private <T> Future<T> consultar(Supplier<T> consulta) {
+        return executor.submit(() -> {
+            permisos.acquire();
+            try {
+                return transactionTemplate.execute(status -> consulta.get());
+            } finally {
+                permisos.release();
+            }
+        });
+    }
+
+    // Devuelve null y anota la seccion si no termino dentro del plazo o fallo
+    private <T> T esperar(Future<T> futuro, long plazo, String seccion, List<String> incompletas) {
+        try {
+            return futuro.get(Math.max(0, plazo - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            log.warn("La seccion {} de la ficha no respondio dentro de {} ms", seccion, timeoutMs);
+        } catch (ExecutionException e) {
+            log.warn("Error al obtener la seccion {} de la ficha: {}", seccion, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta de la ficha interrumpida", e);
+        }
+        incompletas.add(seccion);
+        return null;
+    }
+
+    private InscripcionActiva aInscripcionActiva(Inscripcion i) {
+        return new InscripcionActiva(i.getId(), i.getDeporteId().getId(), i.getDeporteId().getNombre(), i.getFechaInscripcion());
+    }
+
+    private ResumenPromocion aResumenPromocion(Promocion p) {
+        return new ResumenPromocion(p.getId(), p.getNombre(), p.getDescripcion(), p.getTipoDescuento(), p.getDescuento(), p.getActivo());
+    }
+}
@@ -1,6 +1,7 @@
 package com.club_libertad.services;
 
 import com.club_libertad.dtos.PersonaDTO;
+import com.club_libertad.enums.CategoriaPersona;
 import com.club_libertad.exceptions.RegistroDuplicadoException;
 import com.club_libertad.models.Deporte;
 import com.club_libertad.models.Persona;
@@ -14,10 +15,16 @@ import com.club_libertad.repositories.PromocionRepository;
 import com.club_libertad.models.Registro;
 import com.club_libertad.models.Promocion;
 
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -31,8 +38,12 @@ public class PersonaService {
     private final CuotaRepository cuotaRepository;
     private final PagoRepository pagoRepository;
     private final PromocionRepository promocionRepository;
+    private final SaldoService saldoService;
+    private final CajaService cajaService;
+    private final IndiceDniService indiceDniService;
+    private final FamiliaService familiaService;
 
-    public PersonaService(PersonaRepository personaRepository, DeporteRepository deporteRepository, RegistroRepository registroRepository, InscripcionRepository inscripcionRepository, CuotaRepository cuotaRepository, PagoRepository pagoRepository, PromocionRepository promocionRepository) {
+    public PersonaService(PersonaRepository personaRepository, DeporteRepository deporteRepository, RegistroRepository registroRepository, InscripcionRepository inscripcionRepository, CuotaRepository cuotaRepository, PagoRepository pagoRepository, PromocionRepository promocionRepository, SaldoService saldoService, CajaService cajaService, IndiceDniService indiceDniService, FamiliaService familiaService) {
         this.personaRepository = personaRepository;
         this.deporteRepository = deporteRepository;
         this.registroRepository = registroRepository;
@@ -40,21 +51,74 @@ public class PersonaService {
         this.cuotaRepository = cuotaRepository;
         this.pagoRepository = pagoRepository;
         this.promocionRepository = promocionRepository;
+        this.saldoService = saldoService;
+        this.cajaService = cajaService;
+        this.indiceDniService = indiceDniService;
+        this.familiaService = familiaService;
     }
 
     @Transactional(readOnly = true)
     public List<Persona> getAllPersonas(){
-        return personaRepository.findAll();
+        return personaRepository.findAllConDeportes();
+    }
+
+    public record VentanaPersonas(List<Persona> personas, String siguienteApellido, String siguienteNombre, Long siguienteId, boolean hayMas) {}
+
+    public record ResultadoBusqueda(Long personaId, Long registroId, String nombre, String apellido, String dni,
+                                    Boolean activo, boolean dadoDeBaja, double puntaje) {}
+
+    /**
+     * Personas ordenadas por apellido, nombre e id, paginadas por clave: la siguiente pagina se pide con
+     * los valores de la ultima persona recibida, asi cada pagina cuesta lo mismo sin importar el padron.
+     * Solo los filtros informados se agregan al WHERE, para que el plan use el indice que corresponde.
+     */
+    @Transactional(readOnly = true)
+    public VentanaPersonas buscarPersonas(CategoriaPersona categoria, Boolean activo, Long deporteId, Long promocionId,
+                                          String despuesDeApellido, String despuesDeNombre, Long despuesDeId, int tamanio){
+        Specification<Persona> filtro = (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>();
+            if(categoria != null) predicados.add(cb.equal(root.get("categoria"), categoria));
+            if(activo != null) predicados.add(cb.equal(root.get("activo"), activo));
+            if(promocionId != null) predicados.add(cb.equal(root.get("promocion").get("id"), promocionId));
+            if(deporteId != null) predicados.add(cb.equal(root.join("deportes").get("id"), deporteId));
+            if(despuesDeId != null) {
+                predicados.add(cb.or(
+                        cb.greaterThan(root.get("apellido"), despuesDeApellido),
+                        cb.and(cb.equal(root.get("apellido"), despuesDeApellido), cb.greaterThan(root.get("nombre"), despuesDeNombre)),
+                        cb.and(cb.equal(root.get("apellido"), despuesDeApellido), cb.equal(root.get("nombre"), despuesDeNombre), cb.greaterThan(root.get("id"), despuesDeId))));
+            }
+            return cb.and(predicados.toArray(Predicate[]::new));
+        };
+        Sort orden = Sort.by("apellido", "nombre", "id");
+        // Se pide una de mas para saber si hay otra pagina sin hacer un COUNT
+        List<Persona> personas = personaRepository.findBy(filtro, q -> q.sortBy(orden).limit(tamanio + 1).all());
+        boolean hayMas = personas.size() > tamanio;
+        if(hayMas) personas = personas.subList(0, tamanio);
+        Persona ultima = hayMas ? personas.get(personas.size() - 1) : null;
+        return new VentanaPersonas(personas,
+                ultima != null ? ultima.getApellido() : null,
+                ultima != null ? ultima.getNombre() : null,
+                ultima != null ? ultima.getId() : null,
+                hayMas);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResultadoBusqueda> buscarPorTexto(String texto, int limite){
+        return personaRepository.buscarPorTexto(texto, limite).stream()
+                .map(c -> new ResultadoBusqueda(c.personaId(), c.registroId(), c.nombre(), c.apellido(), c.dni(),
+                        c.activo(), c.dadoDeBaja(), c.puntaje()))
+                .toList();
     }
 
     @Transactional(readOnly = true)
     public Optional<Persona> getPersonaById(Long id){
-        return personaRepository.findById(id);
+        return personaRepository.findConDeportesById(id);
     }
 
     @Transactional
     public Optional<Long> savePersona(PersonaDTO personaTransfer){
-        Optional<Registro> registroExistente = registroRepository.findByDni(personaTransfer.getDni());
+        // El indice de DNI evita la consulta cuando el DNI seguro no esta registrado (la mayoria de las altas)
+        Optional<Registro> registroExistente = indiceDniService.buscarRegistroParaAlta(personaTransfer.getDni());
         boolean usarRegistroExistente = Boolean.TRUE.equals(personaTransfer.getUsarRegistroExistente());
         if (registroExistente.isPresent() && !usarRegistroExistente) {
             throw new RegistroDuplicadoException(registroExistente.get());
@@ -84,9 +148,9 @@ public class PersonaService {
             socioResponsable.setId(personaTransfer.getSocioResponsableId());
             personaCreate.setSocioResponsable(socioResponsable);
         } else if (personaTransfer.getSocioResponsableDni() != null && !personaTransfer.getSocioResponsableDni().trim().isEmpty()) {
-            Optional<Persona> socioResponsable = personaRepository.findByDni(personaTransfer.getSocioResponsableDni().trim());
-            if (socioResponsable.isPresent()) {
-                personaCreate.setSocioResponsable(socioResponsable.get());
+            Optional<Long> socioResponsableId = indiceDniService.buscarPersonaId(personaTransfer.getSocioResponsableDni().trim());
+            if (socioResponsableId.isPresent()) {
+                personaCreate.setSocioResponsable(personaRepository.getReferenceById(socioResponsableId.get()));
             } else {
                 return Optional.empty();
             }
@@ -106,11 +170,21 @@ public class PersonaService {
         registro.setApellido(personaCreate.getApellido());
         registro.setDni(personaCreate.getDni());
         registro.setFechaRegistro(fechaRegistro);
+        Long registroId = registroExistente.map(Registro::getId).orElse(null);
         if (registroExistente.isEmpty()) {
-            registroRepository.save(registro);
+            // Si el DNI se registro mientras tanto (otra alta u otra instancia) se informa igual que arriba
+            Optional<Long> insertado = registroRepository.insertRegistroIfAbsent(registro);
+            if (insertado.isEmpty() && !usarRegistroExistente) {
+                throw new RegistroDuplicadoException(registroRepository.findByDni(registro.getDni()).orElseThrow());
+            }
+            registroId = insertado.orElse(null);
         }
 
         Persona p = personaRepository.save(personaCreate);
+        indiceDniService.registrarAlta(p.getDni(), p.getId(), registroId);
+        if (p.getSocioResponsable() != null) {
+            familiaService.invalidar(List.of(p.getSocioResponsable().getId()));
+        }
 
         return Optional.of(p.getId());
     }
@@ -121,21 +195,10 @@ public class PersonaService {
         Optional<Persona> persona = personaRepository.findById(id);
         if(persona.isPresent()){
             persona.get().setActivo(!persona.get().getActivo());
-            String dni = persona.get().getDni();
-            Optional<Registro> registro = registroRepository.findByDni(dni);
-            if(registro.isPresent()){
-                if(registro.get().getFechaBaja() == null){
-                    registro.get().setFechaBaja(ZonedDateTime.now());
-                    if(observacionBaja != null && !observacionBaja.trim().isEmpty()){
-                    registro.get().setObservacionBaja(observacionBaja);
-                    }
-                }
-                else{
-                    registro.get().setFechaBaja(null);
-                    registro.get().setObservacionBaja(null);
-                }
-                b = true;
-            }
+            familiaService.invalidar(List.of(id));
+            // Un solo UPDATE por DNI: no hace falta leer el registro para alternar la baja
+            String observacion = observacionBaja != null && !observacionBaja.trim().isEmpty() ? observacionBaja : null;
+            b = registroRepository.alternarBaja(persona.get().getDni(), ZonedDateTime.now(), observacion) > 0;
         }
         return b;
     }
@@ -162,6 +225,10 @@ public class PersonaService {
                 p.setId(personaUpdate.getPromocionId());
                 persona.get().setPromocion(p);
             }
+            // El grupo familiar guarda nombre, categoria y socio responsable de cada integrante
+            List<Long> afectadas = new ArrayList<>(List.of(id));
+            if(personaUpdate.getSocioResponsableId() != null) afectadas.add(personaUpdate.getSocioResponsableId());
+            familiaService.invalidar(afectadas);
             b = true;
         }
         return b;
@@ -169,11 +236,10 @@ public class PersonaService {
 
     @Transactional
     public boolean asociarDeporte(Long personaId, Long deporteId){
-        Optional<Persona> persona = personaRepository.findById(personaId);
-        Optional<Deporte> deporte = deporteRepository.findById(deporteId);
-        if(persona.isPresent() && deporte.isPresent()){
-            persona.get().getDeportes().add(deporte.get());
-            personaRepository.save(persona.get());
+        if(personaRepository.existsById(personaId) && deporteRepository.existsById(deporteId)){
+            // El contador solo suma si la fila se inserto (una asociacion repetida no cuenta dos veces)
+            int insertadas = personaRepository.insertDeporte(personaId, deporteId);
+            if(insertadas > 0) deporteRepository.sumarSocios(deporteId, insertadas);
             return true;
         }
         return false;
@@ -181,11 +247,9 @@ public class PersonaService {
 
     @Transactional
     public boolean desasociarDeporte(Long personaId, Long deporteId){
-        Optional<Persona> persona = personaRepository.findById(personaId);
-        Optional<Deporte> deporte = deporteRepository.findById(deporteId);
-        if(persona.isPresent() && deporte.isPresent()){
-            persona.get().getDeportes().remove(deporte.get());
-            personaRepository.save(persona.get());
+        if(personaRepository.existsById(personaId) && deporteRepository.existsById(deporteId)){
+            int borradas = personaRepository.deleteDeporte(personaId, deporteId);
+            if(borradas > 0) deporteRepository.sumarSocios(deporteId, -borradas);
             return true;
         }
         return false;
@@ -199,47 +263,41 @@ public class PersonaService {
 
     @Transactional
     public boolean deletePersonaById(Long id, String observacionBaja){
-        if(personaRepository.existsById(id)){
-            Optional<Persona> persona = personaRepository.findById(id);
-            if(persona.isPresent()){
-                // Actualizar el registro con la fecha de baja y observación
-                String dni = persona.get().getDni();
-                Optional<Registro> registro = registroRepository.findByDni(dni);
-                if(registro.isPresent()) {
-                    registro.get().setFechaBaja(ZonedDateTime.now());
-                    if(observacionBaja != null && !observacionBaja.trim().isEmpty()) {
-                        registro.get().setObservacionBaja(observacionBaja);
-                    }
-                    registroRepository.save(registro.get());
-                }
-                
-                // Eliminar todas las cuotas asociadas a esta persona
-                cuotaRepository.deleteByPersonaId_Id(id);
-                
-                // Eliminar todas las inscripciones de esta persona
-                inscripcionRepository.deleteByPersonaId_Id(id);
-
-                // Eliminar todos los pagos asociados a esta persona
-                pagoRepository.deleteBySocioId_Id(id);
-                
-                // Desasociar promociones y deportes (relaciones many-to-many)
-                persona.get().setPromocion(null);
-                persona.get().getDeportes().clear();
-                personaRepository.save(persona.get());
-                
-                // Eliminar referencias como socioResponsable de otras personas
-                List<Persona> personasDependientes = personaRepository.findAll().stream()
-                    .filter(p -> p.getSocioResponsable() != null && p.getSocioResponsable().getId().equals(id))
-                    .toList();
-                for(Persona p : personasDependientes){
-                    p.setSocioResponsable(null);
-                }
-                
-                // 5. Finalmente, eliminar la persona
-                personaRepository.deleteById(id);
-                return true;
-            }
-        }
-        return false;
+        return !eliminarPersonas(List.of(id), observacionBaja).isEmpty();
+    }
+
+    /**
+     * Da de baja a varias personas en una sola transaccion con un numero fijo de sentencias por conjunto:
+     * marca la baja en registro, borra cuotas, inscripciones, pagos y deportes, desvincula a quienes las
+     * tenian como socio responsable (por indice) y borra las personas. Devuelve los ids que existian.
+     */
+    @Transactional
+    public List<Long> eliminarPersonas(Collection<Long> ids, String observacionBaja){
+        List<Long> existentes = ids.isEmpty() ? List.of() : personaRepository.findIdsExistentes(ids);
+        if(existentes.isEmpty()) return existentes;
+
+        // Actualizar el registro con la fecha de baja y observación
+        String observacion = observacionBaja != null && !observacionBaja.trim().isEmpty() ? observacionBaja : null;
+        registroRepository.registrarBaja(existentes, ZonedDateTime.now(), observacion);
+
+        // Fechas de los pagos a eliminar, para descontarlos después de la caja diaria
+        List<LocalDate> fechasPagos = pagoRepository.findFechasPagoBySocioIds(existentes);
+
+        // Cuotas de estas personas y las asociadas a sus pagos, inscripciones y pagos
+        cuotaRepository.deleteByPersonaIdsYPagosDeSocios(existentes);
+        saldoService.eliminarSaldos(existentes);
+        inscripcionRepository.deleteByPersonaIds(existentes);
+        pagoRepository.deleteBySocioIds(existentes);
+        cajaService.recalcularDias(fechasPagos);
+
+        // Desasociar deportes y referencias como socioResponsable de otras personas
+        personaRepository.deleteDeportesByPersonaIds(existentes);
+        personaRepository.desvincularDependientes(existentes);
+
+        // Finalmente, eliminar las personas
+        personaRepository.deleteByIds(existentes);
+        indiceDniService.olvidarPersonas(existentes);
+        familiaService.invalidar(existentes);
+        return existentes;
     }
 }
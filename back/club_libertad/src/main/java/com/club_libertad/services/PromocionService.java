@@ -12,9 +12,11 @@ import java.util.Optional;
 @Service
 public class PromocionService {
     private final PromocionRepository promocionRepository;
+    private final TarifaService tarifaService;
 
-    public PromocionService(PromocionRepository promocionRepository) {
+    public PromocionService(PromocionRepository promocionRepository, TarifaService tarifaService) {
         this.promocionRepository = promocionRepository;
+        this.tarifaService = tarifaService;
     }
 
     @Transactional(readOnly = true)
@@ -36,6 +38,7 @@ public class PromocionService {
         promocionCreate.setDescuento(promocionTransfer.getDescuento());
         promocionCreate.setActivo(promocionTransfer.getActivo() != null ? promocionTransfer.getActivo() : true);
         Promocion promocionCreated = promocionRepository.save(promocionCreate);
+        tarifaService.actualizarPromocion(promocionCreated);
         return Optional.of(promocionCreated.getId());
     }
 
@@ -49,6 +52,7 @@ public class PromocionService {
             if (promocionUpdate.getTipoDescuento() != null) promocion.get().setTipoDescuento(promocionUpdate.getTipoDescuento());
             if (promocionUpdate.getDescuento() != null) promocion.get().setDescuento(promocionUpdate.getDescuento());
             if (promocionUpdate.getActivo() != null) promocion.get().setActivo(promocionUpdate.getActivo());
+            tarifaService.actualizarPromocion(promocion.get());
             b = true;
         }
         return b;
@@ -59,6 +63,7 @@ public class PromocionService {
         try {
             if (promocionRepository.existsById(id)) {
                 promocionRepository.deleteById(id);
+                tarifaService.eliminarPromocion(id);
                 return true;
             }
             return false;
@@ -0,0 +1,84 @@
+package com.club_libertad.services;
+
+import com.club_libertad.models.Cuota;
+import com.club_libertad.models.SaldoPersona;
+import com.club_libertad.repositories.PersonaRepository;
+import com.club_libertad.repositories.SaldoPersonaRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Libro de deuda por persona (saldo_persona). Se mantiene de forma incremental desde la generacion de
+ * cuotas, el paso a VENCIDA y los pagos, para que consultar cuanto debe un socio sea una lectura por id.
+ * Las actualizaciones son SQL nativo, por eso antes de recalcular se hace flush de los cambios pendientes.
+ */
+@Service
+public class SaldoService {
+    private final SaldoPersonaRepository saldoPersonaRepository;
+    private final PersonaRepository personaRepository;
+    private final EntityManager entityManager;
+
+    public SaldoService(SaldoPersonaRepository saldoPersonaRepository, PersonaRepository personaRepository, EntityManager entityManager) {
+        this.saldoPersonaRepository = saldoPersonaRepository;
+        this.personaRepository = personaRepository;
+        this.entityManager = entityManager;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializarSiVacio() {
+        if (saldoPersonaRepository.count() == 0) {
+            saldoPersonaRepository.recalcularTodos();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<SaldoPersona> getSaldoByPersonaId(Long personaId) {
+        Optional<SaldoPersona> saldo = saldoPersonaRepository.findById(personaId);
+        if (saldo.isEmpty() && personaRepository.existsById(personaId)) {
+            // Persona sin cuotas todavia: no debe nada
+            SaldoPersona vacio = new SaldoPersona();
+            vacio.setPersonaId(personaId);
+            vacio.setFechaActualizacion(ZonedDateTime.now());
+            saldo = Optional.of(vacio);
+        }
+        return saldo;
+    }
+
+    @Transactional
+    public void registrarCuotasGeneradas(List<Cuota> cuotas) {
+        saldoPersonaRepository.sumarCuotasGeneradas(cuotas);
+    }
+
+    @Transactional
+    public void recalcular(Collection<Long> personaIds) {
+        entityManager.flush();
+        saldoPersonaRepository.recalcular(personaIds);
+    }
+
+    @Transactional
+    public void recalcularPorDeportePeriodo(Long deporteId, LocalDate periodo) {
+        entityManager.flush();
+        saldoPersonaRepository.recalcularPorDeportePeriodo(deporteId, periodo);
+    }
+
+    @Transactional
+    public void recalcularTodos() {
+        entityManager.flush();
+        saldoPersonaRepository.recalcularTodos();
+    }
+
+    @Transactional
+    public void eliminarSaldos(Collection<Long> personaIds) {
+        saldoPersonaRepository.deleteByPersonaIds(personaIds);
+    }
+}
@@ -0,0 +1,178 @@
+package com.club_libertad.services;
+
+import com.club_libertad.models.Deporte;
+import com.club_libertad.models.Promocion;
+import com.club_libertad.repositories.DeporteRepository;
+import com.club_libertad.repositories.PromocionRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matriz de tarifas precalculada por (deporte, promocion). Solo hay |deportes| x (|promociones| + 1)
+ * resultados distintos, asi que la generacion de cuotas los consulta en vez de recalcularlos por cuota.
+ * Se arma al iniciar la aplicacion y se actualiza de forma incremental cuando cambia un deporte o una
+ * promocion: despues del commit se descartan las celdas afectadas y se recalculan leyendo las filas ya
+ * confirmadas en una transaccion nueva. Los recalculos se serializan, asi el ultimo en correr ve todos los
+ * commits anteriores y dos cambios concurrentes (un deporte y una promocion) no dejan una celda vieja.
+ */
+@Service
+public class TarifaService {
+    private final DeporteRepository deporteRepository;
+    private final PromocionRepository promocionRepository;
+    private final TransactionTemplate lecturaNueva;
+    private final Map<ClaveTarifa, Tarifa> matriz = new ConcurrentHashMap<>();
+
+    public TarifaService(DeporteRepository deporteRepository, PromocionRepository promocionRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.deporteRepository = deporteRepository;
+        this.promocionRepository = promocionRepository;
+        // En afterCommit el EntityManager de la transaccion terminada sigue asociado al hilo con sus entidades
+        // cargadas; el recalculo usa uno nuevo para leer lo confirmado
+        this.lecturaNueva = new TransactionTemplate(transactionManager);
+        this.lecturaNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lecturaNueva.setReadOnly(true);
+    }
+
+    // promocionId null = persona sin promocion
+    private record ClaveTarifa(Long deporteId, Long promocionId) {}
+
+    public record Tarifa(BigDecimal cuotaEntrenador, BigDecimal cuotaSeguro, BigDecimal cuotaSocial, BigDecimal monto) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void construirMatriz() {
+        Map<ClaveTarifa, Tarifa> nueva = lecturaNueva.execute(status -> {
+            List<Promocion> promociones = promocionRepository.findAll();
+            Map<ClaveTarifa, Tarifa> filas = new HashMap<>();
+            for (Deporte deporte : deporteRepository.findAll()) {
+                filas.putAll(calcularFilaDeporte(deporte, promociones));
+            }
+            return filas;
+        });
+        matriz.clear();
+        matriz.putAll(nueva);
+    }
+
+    public Tarifa obtenerTarifa(Deporte deporte, Promocion promocion) {
+        ClaveTarifa clave = new ClaveTarifa(deporte.getId(), promocion != null ? promocion.getId() : null);
+        Tarifa tarifa = matriz.get(clave);
+        if (tarifa == null) {
+            // Combinacion no publicada (dentro de la transaccion que la creo o mientras se recalcula): no se guarda
+            tarifa = calcularTarifa(deporte, promocion);
+        }
+        return tarifa;
+    }
+
+    // Tarifas publicadas del deporte por promocion (clave null = sin promocion); vacio si el deporte no esta en la matriz
+    public Map<Long, Tarifa> tarifasDeDeporte(Long deporteId) {
+        Map<Long, Tarifa> fila = new HashMap<>();
+        matriz.forEach((clave, tarifa) -> {
+            if (clave.deporteId().equals(deporteId)) fila.put(clave.promocionId(), tarifa);
+        });
+        return fila;
+    }
+
+    // Se llama dentro de la transaccion que modifica el deporte
+    public void actualizarDeporte(Deporte deporte) {
+        Long deporteId = deporte.getId();
+        alConfirmar(() -> refrescarDeporte(deporteId));
+    }
+
+    // Se llama dentro de la transaccion que modifica la promocion
+    public void actualizarPromocion(Promocion promocion) {
+        Long promocionId = promocion.getId();
+        alConfirmar(() -> refrescarPromocion(promocionId));
+    }
+
+    public void eliminarDeporte(Long deporteId) {
+        alConfirmar(() -> matriz.keySet().removeIf(clave -> clave.deporteId().equals(deporteId)));
+    }
+
+    public void eliminarPromocion(Long promocionId) {
+        alConfirmar(() -> matriz.keySet().removeIf(clave -> promocionId.equals(clave.promocionId())));
+    }
+
+    private synchronized void refrescarDeporte(Long deporteId) {
+        matriz.keySet().removeIf(clave -> clave.deporteId().equals(deporteId));
+        Map<ClaveTarifa, Tarifa> fila = lecturaNueva.execute(status -> deporteRepository.findById(deporteId)
+                .map(deporte -> calcularFilaDeporte(deporte, promocionRepository.findAll()))
+                .orElse(Map.of()));
+        matriz.putAll(fila);
+    }
+
+    private synchronized void refrescarPromocion(Long promocionId) {
+        matriz.keySet().removeIf(clave -> promocionId.equals(clave.promocionId()));
+        Map<ClaveTarifa, Tarifa> columna = lecturaNueva.execute(status -> {
+            Map<ClaveTarifa, Tarifa> celdas = new HashMap<>();
+            promocionRepository.findById(promocionId).ifPresent(promocion -> {
+                for (Deporte deporte : deporteRepository.findAll()) {
+                    celdas.put(new ClaveTarifa(deporte.getId(), promocionId), calcularTarifa(deporte, promocion));
+                }
+            });
+            return celdas;
+        });
+        matriz.putAll(columna);
+    }
+
+    private Map<ClaveTarifa, Tarifa> calcularFilaDeporte(Deporte deporte, List<Promocion> promociones) {
+        Map<ClaveTarifa, Tarifa> fila = new HashMap<>();
+        fila.put(new ClaveTarifa(deporte.getId(), null), calcularTarifa(deporte, null));
+        for (Promocion promocion : promociones) {
+            fila.put(new ClaveTarifa(deporte.getId(), promocion.getId()), calcularTarifa(deporte, promocion));
+        }
+        return fila;
+    }
+
+    private Tarifa calcularTarifa(Deporte deporte, Promocion promocion) {
+        BigDecimal cuotaEntrenador = deporte.getCuotaEntrenador() != null ? deporte.getCuotaEntrenador() : BigDecimal.ZERO;
+        BigDecimal cuotaSeguro = deporte.getCuotaSeguro() != null ? deporte.getCuotaSeguro() : BigDecimal.ZERO;
+        BigDecimal cuotaSocial = deporte.getCuotaSocial() != null ? deporte.getCuotaSocial() : BigDecimal.ZERO;
+        BigDecimal montoBase = cuotaEntrenador.add(cuotaSeguro).add(cuotaSocial);
+        return new Tarifa(cuotaEntrenador, cuotaSeguro, cuotaSocial, aplicarDescuentoPromocion(montoBase, promocion));
+    }
+
+    // Método auxiliar para calcular monto con descuentos de promociones
+    private BigDecimal aplicarDescuentoPromocion(BigDecimal montoOriginal, Promocion promocion) {
+        if (promocion == null) {
+            return montoOriginal;
+        }
+        
+        BigDecimal descuentoTotal = BigDecimal.ZERO;
+        if (promocion.getActivo() != null && promocion.getActivo()) {
+            if (promocion.getTipoDescuento().name().equals("PORCENTAJE")) {
+                BigDecimal descuentoPorcentual = montoOriginal.multiply(promocion.getDescuento()).divide(BigDecimal.valueOf(100));
+                descuentoTotal = descuentoTotal.add(descuentoPorcentual);
+            } else { // MONTO_FIJO
+                descuentoTotal = descuentoTotal.add(promocion.getDescuento());
+            }
+        }
+        
+        
+        BigDecimal montoFinal = montoOriginal.subtract(descuentoTotal);
+        return montoFinal.compareTo(BigDecimal.ZERO) > 0 ? montoFinal : BigDecimal.ZERO;
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.club_libertad.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroBloomTest {
+
+    @Test
+    void noDaFalsosNegativos() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.01);
+        for (int dni = 20_000_000; dni < 20_010_000; dni++) {
+            filtro.agregar(String.valueOf(dni));
+        }
+        for (int dni = 20_000_000; dni < 20_010_000; dni++) {
+            assertTrue(filtro.puedeContener(String.valueOf(dni)), "Falso negativo para " + dni);
+        }
+    }
+
+    @Test
+    void falsosPositivosCercaDeLaProbabilidadPedida() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.01);
+        for (int dni = 30_000_000; dni < 30_010_000; dni++) {
+            filtro.agregar(String.valueOf(dni));
+        }
+        int falsosPositivos = 0;
+        for (int dni = 40_000_000; dni < 40_010_000; dni++) {
+            if (filtro.puedeContener(String.valueOf(dni))) falsosPositivos++;
+        }
+        assertTrue(falsosPositivos < 300, "Demasiados falsos positivos: " + falsosPositivos);
+    }
+}
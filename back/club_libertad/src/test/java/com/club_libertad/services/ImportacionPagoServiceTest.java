@@ -0,0 +1,36 @@
+package com.club_libertad.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImportacionPagoServiceTest {
+
+    @Test
+    void montoConComaDecimal() {
+        assertEquals(new BigDecimal("1500.00"), ImportacionPagoService.parsearMonto("1500,00"));
+        assertEquals(new BigDecimal("1234567.50"), ImportacionPagoService.parsearMonto("1.234.567,50"));
+    }
+
+    @Test
+    void montoConPuntoDecimal() {
+        assertEquals(new BigDecimal("1500.00"), ImportacionPagoService.parsearMonto("1500.00"));
+        assertEquals(new BigDecimal("1234567.50"), ImportacionPagoService.parsearMonto(" 1,234,567.50 "));
+    }
+
+    @Test
+    void montoEntero() {
+        assertEquals(new BigDecimal("1500"), ImportacionPagoService.parsearMonto("1500"));
+        assertEquals(new BigDecimal("1500000"), ImportacionPagoService.parsearMonto("1.500.000"));
+    }
+
+    @Test
+    void montoAmbiguoSeRechaza() {
+        assertThrows(NumberFormatException.class, () -> ImportacionPagoService.parsearMonto("1.500"));
+        assertThrows(NumberFormatException.class, () -> ImportacionPagoService.parsearMonto("1,5"));
+        assertThrows(NumberFormatException.class, () -> ImportacionPagoService.parsearMonto("1.500,00.00"));
+    }
+}
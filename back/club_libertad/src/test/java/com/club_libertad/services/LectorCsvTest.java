@@ -0,0 +1,37 @@
+package com.club_libertad.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LectorCsvTest {
+
+    @Test
+    void separadorPuntoYComaOComa() {
+        assertEquals(';', LectorCsv.separador("30123456;Ana;Perez;SOCIO"));
+        assertEquals(',', LectorCsv.separador("30123456,Ana,Perez,SOCIO"));
+    }
+
+    @Test
+    void puntoYComaEntreComillasNoCambiaElSeparador() {
+        assertEquals(',', LectorCsv.separador("30123456,Ana,\"Calle 1; depto 2\""));
+        assertEquals(';', LectorCsv.separador("\"Perez, Ana\";30123456"));
+    }
+
+    @Test
+    void camposSinComillasSeRecortan() {
+        assertArrayEquals(new String[]{"30123456", "Ana", "Perez", ""}, LectorCsv.campos(" 30123456 ; Ana ;Perez;", ';'));
+    }
+
+    @Test
+    void separadorEntreComillasQuedaEnElCampo() {
+        assertArrayEquals(new String[]{"30123456", "Perez, Ana", "SOCIO"}, LectorCsv.campos("30123456,\"Perez, Ana\",SOCIO", ','));
+        assertArrayEquals(new String[]{"Calle 1; depto 2", "x"}, LectorCsv.campos("\"Calle 1; depto 2\";x", ';'));
+    }
+
+    @Test
+    void comillasDoblesEscapadas() {
+        assertArrayEquals(new String[]{"1", "dijo \"hola\"", "3"}, LectorCsv.campos("1;\"dijo \"\"hola\"\"\";3", ';'));
+    }
+}
@@ -40,8 +40,9 @@ export function DeportesModule({ userRole }: DeportesModuleProps) {
 
   const totalCuota = (formData.cuotaEntrenador ?? 0) + (formData.cuotaSeguro ?? 0) + (formData.cuotaSocial ?? 0);
 
-  const deportesActivosDePersona = deportes.filter((deporte: Deporte) => 
-    deporte.personasIds?.includes(selectedPersonaId)
+  const personaSeleccionada = personas.find((p) => String(p.id) === selectedPersonaId);
+  const deportesActivosDePersona = deportes.filter((deporte: Deporte) =>
+    deporte.id !== undefined && (personaSeleccionada?.deportesIds?.includes(deporte.id) ?? false)
   );
   
   // Cargar deportes desde el backend
@@ -253,7 +254,7 @@ export function DeportesModule({ userRole }: DeportesModuleProps) {
                 ${Array.isArray(deportes)
                   ? deportes
                       .reduce((sum, d) => {
-                        const socios = d.numeroSocios ?? d.personasIds?.length ?? 0;
+                        const socios = d.numeroSocios ?? 0;
                         return sum + d.cuotaMensual * socios;
                       }, 0)
                       .toLocaleString()
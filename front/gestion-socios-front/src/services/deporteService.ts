@@ -46,8 +46,9 @@ const deporteService = {
     });
   },
 
-  getPersonas(deporteId: number) {
-    return api.get(`/deporte/${deporteId}/personas`).catch(error => {
+  // Plantel paginado: { personas, pagina, tamanio, total, hayMas }
+  getPersonas(deporteId: number, params?: { pagina?: number; tamanio?: number; orden?: string; direccion?: 'ASC' | 'DESC' }) {
+    return api.get(`/deporte/${deporteId}/personas`, { params }).catch(error => {
       console.error('Error al obtener personas del deporte:', error);
       throw error;
     });
@@ -6,6 +6,5 @@ export interface Deporte {
   cuotaEntrenador: number;
   cuotaSeguro: number;
   cuotaSocial: number;
-  personasIds?: number[]; // IDs de las personas asociadas
   numeroSocios?: number; // Número de socios asociados
 }
\ No newline at end of file